@@ -6,13 +6,16 @@ import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Result;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
 import java.util.*;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.util.Arrays.asList;
 
@@ -48,55 +51,162 @@ public class Coll {
     @Procedure
     @Description("apoc.coll.sum([0.5,1,2.3])")
     public Stream<DoubleResult> sum(@Name("numbers") List<Number> list) {
-        double sum = 0;
-        for (Number number : list) {
-            sum += number.doubleValue();
-        }
-        return Stream.of(new DoubleResult(sum));
+        return Stream.of(new DoubleResult(Numbers.sum(list)));
     }
     @Procedure
     @Description("apoc.coll.min([0.5,1,2.3])")
     public Stream<ObjectResult> min(@Name("values") List<Object> list) {
+        Number min = Numbers.extreme(list, false);
+        if (min != null || list.isEmpty()) return Stream.of(new ObjectResult(min));
         return Stream.of(new ObjectResult(Collections.min((List)list)));
     }
 
     @Procedure
     @Description("apoc.coll.max([0.5,1,2.3])")
     public Stream<ObjectResult> max(@Name("values") List<Object> list) {
+        Number max = Numbers.extreme(list, true);
+        if (max != null || list.isEmpty()) return Stream.of(new ObjectResult(max));
         return Stream.of(new ObjectResult(Collections.max((List)list)));
     }
+
+    @Procedure
+    @Description("apoc.coll.stats([0.5,1,2.3]) - count, sum, min, max, avg and stdev of a list of numbers in a single pass")
+    public Stream<StatsResult> stats(@Name("numbers") List<Number> list) {
+        return Stream.of(Numbers.stats(list));
+    }
+
+    public static class StatsResult {
+        public final long count;
+        public final double sum;
+        public final Number min;
+        public final Number max;
+        public final double avg;
+        public final double stdev;
+
+        public StatsResult(long count, double sum, Number min, Number max, double avg, double stdev) {
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+            this.avg = avg;
+            this.stdev = stdev;
+        }
+    }
     @Procedure
     @Description("apoc.coll.partition(list,batchSize)")
     public Stream<ListResult> partition(@Name("values") List<Object> list, @Name("batchSize") long batchSize) {
-        return partitionList(list, (int) batchSize).map(ListResult::new);
+        return partitionList(list, batchSize(batchSize)).map(ListResult::new);
+    }
+
+    @Procedure
+    @Description("apoc.coll.partitionArrays(list,batchSize) partitions a list of numbers into primitive long[] or double[] batches")
+    public Stream<ObjectResult> partitionArrays(@Name("values") List<Object> list, @Name("batchSize") long batchSize) {
+        int size = batchSize(batchSize);
+        Object values = Numbers.unbox(list, false);
+        if (values instanceof long[]) {
+            long[] longs = (long[]) values;
+            return pages(longs.length, size).mapToObj(from -> new ObjectResult(Arrays.copyOfRange(longs, from, Math.min(from + size, longs.length))));
+        }
+        if (values instanceof double[]) {
+            double[] doubles = (double[]) values;
+            return pages(doubles.length, size).mapToObj(from -> new ObjectResult(Arrays.copyOfRange(doubles, from, Math.min(from + size, doubles.length))));
+        }
+        return partitionList(list, size).map(ObjectResult::new);
+    }
+
+    @Procedure
+    @Description("apoc.coll.partitionQuery(statement,params,batchSize) lazily partitions the rows of a statement, single column results are batched as values, others as row maps")
+    public Stream<ListResult> partitionQuery(@Name("statement") String statement, @Name("params") Map<String, Object> params, @Name("batchSize") long batchSize) {
+        int size = batchSize(batchSize);
+        Result result = db.execute(statement, params == null ? Collections.<String, Object>emptyMap() : params);
+        List<String> columns = result.columns();
+        String column = columns.size() == 1 ? columns.get(0) : null;
+        Iterator<List<Object>> batches = new Iterator<List<Object>>() {
+            @Override
+            public boolean hasNext() {
+                return result.hasNext();
+            }
+
+            @Override
+            public List<Object> next() {
+                List<Object> batch = new ArrayList<>(size);
+                while (batch.size() < size && result.hasNext()) {
+                    Map<String, Object> row = result.next();
+                    batch.add(column == null ? row : row.get(column));
+                }
+                return batch;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(batches, Spliterator.ORDERED), false)
+                .map(ListResult::new).onClose(result::close);
     }
 
-    private Stream<List<Object>> partitionList(@Name("values") List list, @Name("batchSize") int batchSize) {
+    private static int batchSize(long batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be at least 1, was " + batchSize);
+        return (int) Math.min(batchSize, Integer.MAX_VALUE);
+    }
+
+    // start offsets of the pages, without a trailing empty page
+    private static IntStream pages(int total, int batchSize) {
+        int pages = (int) (((long) total + batchSize - 1) / batchSize);
+        return IntStream.range(0, pages).map(page -> page * batchSize);
+    }
+
+    private Stream<List<Object>> partitionList(List<Object> list, int batchSize) {
         int total = list.size();
-        int pages = (total / batchSize) + 1;
-        return IntStream.range(0, pages).parallel().boxed()
-                .map(page -> {
-                    int from = page * batchSize;
-                    return list.subList(from, Math.min(from + batchSize, total));
-                });
+        return pages(total, batchSize).mapToObj(from -> list.subList(from, Math.min(from + batchSize, total)));
     }
 
     @Procedure
-    @Description("apoc.coll.contains(coll, value) optimized contains operation (using a HashSet) (returns single row or not)")
+    @Description("apoc.coll.contains(coll, value) optimized contains operation (scanning large lists in parallel, use apoc.coll.set.create for lists that are checked repeatedly) (returns single row or not)")
     public Stream<Empty> contains(@Name("coll") List<Object> coll, @Name("value") Object value) {
-        boolean result =  new HashSet<>(coll).contains(value);
-//        int batchSize = 250;
-//        boolean result = (coll.size() < batchSize) ? coll.contains(value) : partitionList(coll, batchSize).parallel().anyMatch(list -> list.contains(value));
+        boolean result;
+        if (Parallel.isParallel(coll.size())) {
+            result = Parallel.run(() -> coll.parallelStream().anyMatch(v -> Objects.equals(v, value)));
+        } else {
+            result = coll.contains(value);
+        }
         return Empty.stream(result);
     }
 
     @Procedure
     @Description("apoc.coll.containsAll(coll, values) optimized contains-all operation (using a HashSet) (returns single row or not)")
     public Stream<Empty> containsAll(@Name("coll") List<Object> coll, @Name("values") List<Object> values) {
-        boolean result =  new HashSet<>(coll).containsAll(values);
+        boolean result;
+        if (Parallel.isParallel(coll.size())) {
+            Set<Object> wanted = new HashSet<>(values);
+            Set<Object> found = Parallel.run(() -> coll.parallelStream().filter(wanted::contains).collect(Collectors.toSet()));
+            result = found.size() == wanted.size();
+        } else {
+            result = new HashSet<>(coll).containsAll(values);
+        }
         return Empty.stream(result);
     }
 
+    @Procedure("apoc.coll.set.create")
+    @Description("apoc.coll.set.create(coll) - hashes the list once and returns a handle for apoc.coll.set.contains/containsAll")
+    public Stream<LongResult> createSet(@Name("coll") List<Object> coll) {
+        return Stream.of(new LongResult(HashedSets.create(coll)));
+    }
+
+    @Procedure("apoc.coll.set.contains")
+    @Description("apoc.coll.set.contains(handle, value) contains operation on a set created with apoc.coll.set.create (returns single row or not)")
+    public Stream<Empty> setContains(@Name("handle") long handle, @Name("value") Object value) {
+        return Empty.stream(HashedSets.get(handle).contains(value));
+    }
+
+    @Procedure("apoc.coll.set.containsAll")
+    @Description("apoc.coll.set.containsAll(handle, values) contains-all operation on a set created with apoc.coll.set.create (returns single row or not)")
+    public Stream<Empty> setContainsAll(@Name("handle") long handle, @Name("values") List<Object> values) {
+        return Empty.stream(HashedSets.get(handle).containsAll(values));
+    }
+
+    @Procedure("apoc.coll.set.remove")
+    @Description("apoc.coll.set.remove(handle) releases a set created with apoc.coll.set.create")
+    public Stream<BooleanResult> removeSet(@Name("handle") long handle) {
+        return Stream.of(new BooleanResult(HashedSets.remove(handle)));
+    }
+
     @Procedure
     @Description("apoc.coll.containsSorted(coll, value) optimized contains on a sorted list operation (Collections.binarySearch) (returns single row or not)")
     public Stream<Empty> containsSorted(@Name("coll") List<Object> coll, @Name("value") Object value) {
@@ -109,49 +219,146 @@ public class Coll {
     }
 
     @Procedure
-    @Description("apoc.coll.containsAllSorted(coll, value) optimized contains-all on a sorted list operation (Collections.binarySearch) (returns single row or not)")
+    @Description("apoc.coll.containsAllSorted(coll, value) optimized contains-all on a sorted list operation (galloping search for sorted values, Collections.binarySearch otherwise) (returns single row or not)")
     public Stream<Empty> containsAllSorted(@Name("coll") List<Object> coll, @Name("values") List<Object> values) {
-        int batchSize = 5000-1; // Collections.binarySearchThreshold
-        List list = (coll instanceof RandomAccess || coll.size() < batchSize) ? coll : new ArrayList(coll);
-        for (Object value : values) {
-            boolean result = Collections.binarySearch(list, value) >= 0;
-            if (!result) return Stream.empty();
+        return Empty.stream(SortedSearch.containsAll(coll, values));
+    }
+
+    @Procedure
+    @Description("apoc.coll.findSorted(coll, values) batched lookup of (preferably sorted) values in a sorted list, returns a found flag per value and the matching values")
+    public Stream<SortedMatchResult> findSorted(@Name("coll") List<Object> coll, @Name("values") List<Object> values) {
+        boolean[] found = SortedSearch.find(coll, values);
+        List<Boolean> flags = new ArrayList<>(found.length);
+        List<Object> matches = new ArrayList<>();
+        Iterator<Object> it = values.iterator();
+        for (boolean hit : found) {
+            Object value = it.next();
+            flags.add(hit);
+            if (hit) matches.add(value);
+        }
+        return Stream.of(new SortedMatchResult(flags, matches));
+    }
+
+    public static class SortedMatchResult {
+        public final List<Boolean> found;
+        public final List<Object> matches;
+
+        public SortedMatchResult(List<Boolean> found, List<Object> matches) {
+            this.found = found;
+            this.matches = matches;
         }
-        return Empty.stream(true);
     }
 
+    @Procedure
+    @Description("apoc.coll.union(first, second) distinct union of both lists (using a HashSet)")
+    public Stream<ListResult> union(@Name("first") List<Object> first, @Name("second") List<Object> second) {
+        return Stream.of(new ListResult(SetOperations.hashed(SetOperations.Op.UNION, first, second)));
+    }
+
+    @Procedure
+    @Description("apoc.coll.intersection(first, second) distinct elements that are in both lists (using a HashSet)")
+    public Stream<ListResult> intersection(@Name("first") List<Object> first, @Name("second") List<Object> second) {
+        return Stream.of(new ListResult(SetOperations.hashed(SetOperations.Op.INTERSECTION, first, second)));
+    }
+
+    @Procedure
+    @Description("apoc.coll.subtract(first, second) distinct elements of the first list that are not in the second (using a HashSet)")
+    public Stream<ListResult> subtract(@Name("first") List<Object> first, @Name("second") List<Object> second) {
+        return Stream.of(new ListResult(SetOperations.hashed(SetOperations.Op.SUBTRACT, first, second)));
+    }
+
+    @Procedure
+    @Description("apoc.coll.disjunction(first, second) distinct elements that are in only one of the lists (using a HashSet)")
+    public Stream<ListResult> disjunction(@Name("first") List<Object> first, @Name("second") List<Object> second) {
+        return Stream.of(new ListResult(SetOperations.hashed(SetOperations.Op.DISJUNCTION, first, second)));
+    }
+
+    @Procedure
+    @Description("apoc.coll.unionSorted(first, second) distinct union of both lists, for sorted lists (linear merge, galloping if one list is much smaller)")
+    public Stream<ListResult> unionSorted(@Name("first") List<Object> first, @Name("second") List<Object> second) {
+        return Stream.of(new ListResult(SetOperations.sorted(SetOperations.Op.UNION, first, second, Comparators.forList(first))));
+    }
+
+    @Procedure
+    @Description("apoc.coll.intersectionSorted(first, second) distinct elements that are in both lists, for sorted lists (linear merge, galloping if one list is much smaller)")
+    public Stream<ListResult> intersectionSorted(@Name("first") List<Object> first, @Name("second") List<Object> second) {
+        return Stream.of(new ListResult(SetOperations.sorted(SetOperations.Op.INTERSECTION, first, second, Comparators.forList(first))));
+    }
+
+    @Procedure
+    @Description("apoc.coll.subtractSorted(first, second) distinct elements of the first list that are not in the second, for sorted lists (linear merge, galloping if one list is much smaller)")
+    public Stream<ListResult> subtractSorted(@Name("first") List<Object> first, @Name("second") List<Object> second) {
+        return Stream.of(new ListResult(SetOperations.sorted(SetOperations.Op.SUBTRACT, first, second, Comparators.forList(first))));
+    }
+
+    @Procedure
+    @Description("apoc.coll.disjunctionSorted(first, second) distinct elements that are in only one of the lists, for sorted lists (linear merge, galloping if one list is much smaller)")
+    public Stream<ListResult> disjunctionSorted(@Name("first") List<Object> first, @Name("second") List<Object> second) {
+        return Stream.of(new ListResult(SetOperations.sorted(SetOperations.Op.DISJUNCTION, first, second, Comparators.forList(first))));
+    }
 
     @Procedure
     @Description("apoc.coll.toSet([list]) returns a unique list backed by a set")
     public Stream<ListResult> toSet(@Name("values") List<Object> list) {
+        long[] longs = Numbers.longs(list);
+        if (longs != null) {
+            return Stream.of(new ListResult(new LongSetBackedList(longs)));
+        }
+        if (Parallel.isParallel(list.size())) {
+            return Stream.of(new ListResult(Parallel.run(() -> list.parallelStream().distinct().collect(Collectors.toList()))));
+        }
         return Stream.of(new ListResult(new SetBackedList(new LinkedHashSet(list))));
     }
 
     @Procedure
     @Description("apoc.coll.sumLongs([1,3,3])")
     public Stream<LongResult> sumLongs(@Name("numbers") List<Number> list) {
-        long sum = 0;
-        for (Number number : list) {
-            sum += number.longValue();
-        }
-        return Stream.of(new LongResult(sum));
+        return Stream.of(new LongResult(Numbers.sumLongs(list)));
     }
 
     @Procedure
-    @Description("apoc.coll.sort(coll) sort on Collections")
-    public Stream<ListResult> sort(@Name("coll") List coll) {
-        List sorted = new ArrayList(coll);
-        Collections.sort((List<? extends Comparable>) sorted);
+    @Description("apoc.coll.sort(coll) sort on Collections, with a comparator specialized for the element type")
+    public Stream<ListResult> sort(@Name("coll") List<Object> coll) {
+        Comparator<Object> comparator = Comparators.forList(coll);
+        if (Parallel.isParallel(coll.size())) {
+            return Stream.of(new ListResult(Parallel.sort(coll, comparator)));
+        }
+        List<Object> sorted = new ArrayList<>(coll);
+        sorted.sort(comparator);
         return Stream.of(new ListResult(sorted));
     }
 
     @Procedure
-    @Description("apoc.coll.sortNodes([nodes], 'name') sort nodes by property")
-    public Stream<ListResult> sortNodes(@Name("coll") List coll, @Name("prop") String prop) {
-        List sorted = new ArrayList(coll);
-        Collections.sort((List<? extends PropertyContainer>) sorted,
-                (x, y) -> compare(x.getProperty(prop, null), y.getProperty(prop, null)));
-        return Stream.of(new ListResult(sorted));
+    @Description("apoc.coll.sortNodes([nodes], 'name' or ['name','-age']) sort nodes by one or more properties, '-' prefix sorts descending")
+    public Stream<ListResult> sortNodes(@Name("coll") List coll, @Name("prop") Object prop) {
+        return Stream.of(new ListResult(NodeSorter.sort((List<PropertyContainer>) coll, NodeSorter.keys(prop))));
+    }
+
+    @Procedure
+    @Description("apoc.coll.sortTopK(coll, k, desc) returns the first k elements of the sorted collection, descending if desc is true")
+    public Stream<ListResult> sortTopK(@Name("coll") List<Object> coll, @Name("k") long k, @Name("desc") boolean desc) {
+        return Stream.of(new ListResult(TopK.top(coll, (int) k, Comparators.forList(coll, desc))));
+    }
+
+    @Procedure
+    @Description("apoc.coll.sortTopKStream(coll, k, desc) emits the first k elements of the sorted collection as rows, descending if desc is true")
+    public Stream<ObjectResult> sortTopKStream(@Name("coll") List<Object> coll, @Name("k") long k, @Name("desc") boolean desc) {
+        return TopK.stream(coll, (int) k, Comparators.forList(coll, desc)).map(ObjectResult::new);
+    }
+
+    @Procedure
+    @Description("apoc.coll.sortNodesTopK([nodes], 'name', k) returns the first k nodes sorted by property")
+    public Stream<ListResult> sortNodesTopK(@Name("coll") List coll, @Name("prop") String prop, @Name("k") long k) {
+        List<Object> keys = new ArrayList<>(coll.size());
+        List<Map.Entry<Object, Node>> entries = new ArrayList<>(coll.size());
+        for (Node node : (List<Node>) coll) {
+            Object key = node.getProperty(prop, null);
+            keys.add(key);
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(key, node));
+        }
+        Comparator<Object> comparator = Comparators.forList(keys);
+        List<Map.Entry<Object, Node>> top = TopK.top(entries, (int) k, (x, y) -> comparator.compare(x.getKey(), y.getKey()));
+        return Stream.of(new ListResult(top.stream().map(Map.Entry::getValue).collect(Collectors.toList())));
     }
 
     public static int compare(Object o1, Object o2) {
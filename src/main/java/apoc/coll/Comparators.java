@@ -0,0 +1,65 @@
+package apoc.coll;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Comparator factory that profiles the first elements of a list and returns a comparator specialized for their type.
+ * Each specialized comparator has a single type check as guard and falls back to {@link Coll#compare(Object, Object)}
+ * for elements of other types, so mixed lists still sort correctly, they just don't get the fast path.
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class Comparators {
+
+    static final int PROFILE = 32;
+
+    static final Comparator<Object> GENERIC = Coll::compare;
+
+    static final Comparator<Object> LONGS = (a, b) ->
+            a instanceof Long && b instanceof Long ? Long.compare((Long) a, (Long) b) : Coll.compare(a, b);
+
+    static final Comparator<Object> DOUBLES = (a, b) ->
+            a instanceof Double && b instanceof Double ? Double.compare((Double) a, (Double) b) : Coll.compare(a, b);
+
+    static final Comparator<Object> STRINGS = (a, b) ->
+            a instanceof String && b instanceof String ? ((String) a).compareTo((String) b) : Coll.compare(a, b);
+
+    static final Comparator<Object> BOOLEANS = (a, b) ->
+            a instanceof Boolean && b instanceof Boolean ? Boolean.compare((Boolean) a, (Boolean) b) : Coll.compare(a, b);
+
+    static final Comparator<Object> NODES = (a, b) ->
+            a instanceof Node && b instanceof Node ? Long.compare(((Node) a).getId(), ((Node) b).getId()) : Coll.compare(a, b);
+
+    static final Comparator<Object> RELATIONSHIPS = (a, b) ->
+            a instanceof Relationship && b instanceof Relationship ? Long.compare(((Relationship) a).getId(), ((Relationship) b).getId()) : Coll.compare(a, b);
+
+    static Comparator<Object> forList(List<?> list) {
+        Class<?> type = null;
+        Iterator<?> it = list.iterator();
+        for (int i = 0; i < PROFILE && it.hasNext(); i++) {
+            Object value = it.next();
+            if (value == null) continue;
+            Class<?> valueType = value instanceof Node ? Node.class : value instanceof Relationship ? Relationship.class : value.getClass();
+            if (type == null) type = valueType;
+            else if (type != valueType) return GENERIC;
+        }
+        if (type == Long.class) return LONGS;
+        if (type == Double.class) return DOUBLES;
+        if (type == String.class) return STRINGS;
+        if (type == Boolean.class) return BOOLEANS;
+        if (type == Node.class) return NODES;
+        if (type == Relationship.class) return RELATIONSHIPS;
+        return GENERIC;
+    }
+
+    static Comparator<Object> forList(List<?> list, boolean desc) {
+        Comparator<Object> comparator = forList(list);
+        return desc ? comparator.reversed() : comparator;
+    }
+}
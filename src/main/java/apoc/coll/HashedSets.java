@@ -0,0 +1,70 @@
+package apoc.coll;
+
+import java.security.SecureRandom;
+import java.util.*;
+
+/**
+ * Hashed membership sets created with <code>apoc.coll.set.create</code>, kept between procedure calls
+ * so that a list used per row (e.g. within <code>UNWIND</code>) is hashed only once.
+ * <p>
+ * Sets are addressed by random handles and kept in an LRU cache bounded by the total number of elements,
+ * set with the system property <code>apoc.coll.set.maxElements</code> (default 1000000).
+ * When a new set exceeds the bound, the least recently used sets are released.
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class HashedSets {
+
+    static long maxElements = Long.getLong("apoc.coll.set.maxElements", 1_000_000);
+
+    private static final SecureRandom random = new SecureRandom();
+    // access ordered, guarded by itself
+    private static final LinkedHashMap<Long, Set<Object>> handles = new LinkedHashMap<>(16, 0.75f, true);
+    private static long elements;
+
+    static long create(List<?> list) {
+        Set<Object> set = new HashSet<>(list);
+        if (set.size() > maxElements) {
+            throw new RuntimeException("Set of " + set.size() + " elements exceeds the limit of " + maxElements + " elements (apoc.coll.set.maxElements)");
+        }
+        synchronized (handles) {
+            long handle;
+            do {
+                handle = random.nextLong() & Long.MAX_VALUE;
+            } while (handles.containsKey(handle));
+            handles.put(handle, set);
+            elements += set.size();
+            // the new set is the most recently used one, so it is never evicted here
+            for (Iterator<Set<Object>> it = handles.values().iterator(); elements > maxElements && it.hasNext(); ) {
+                elements -= it.next().size();
+                it.remove();
+            }
+            return handle;
+        }
+    }
+
+    static Set<Object> get(long handle) {
+        Set<Object> set;
+        synchronized (handles) {
+            set = handles.get(handle);
+        }
+        if (set == null) throw new RuntimeException("No set for handle " + handle + ", it was removed or evicted");
+        return set;
+    }
+
+    static boolean remove(long handle) {
+        synchronized (handles) {
+            Set<Object> set = handles.remove(handle);
+            if (set == null) return false;
+            elements -= set.size();
+            return true;
+        }
+    }
+
+    static long elements() {
+        synchronized (handles) {
+            return elements;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package apoc.coll;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Unique list of longs in insertion order, backed by a primitive array and an open-addressing hash table
+ * of positions into it. Indexed access and contains are O(1) without an entry object or boxed value per element.
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class LongSetBackedList extends AbstractList<Long> implements RandomAccess {
+
+    private final long[] values;
+    private final int[] table; // position + 1 into values, 0 marks an empty slot
+    private final int shift;
+    private int size;
+
+    public LongSetBackedList(long[] input) {
+        int capacity = Integer.highestOneBit(Math.max(2, input.length) * 2 - 1) << 1; // at most half full
+        this.table = new int[capacity];
+        this.shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        long[] values = new long[input.length];
+        for (long value : input) {
+            int slot = slot(value, values);
+            if (table[slot] == 0) {
+                values[size++] = value;
+                table[slot] = size;
+            }
+        }
+        this.values = values;
+    }
+
+    // linear probing, returns the slot holding the value or the empty slot where it belongs
+    private int slot(long value, long[] values) {
+        int mask = table.length - 1;
+        int slot = (int) ((value * 0x9E3779B97F4A7C15L) >>> shift);
+        while (table[slot] != 0 && values[table[slot] - 1] != value) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    public int indexOf(long value) {
+        return table[slot(value, values)] - 1;
+    }
+
+    public boolean contains(long value) {
+        return indexOf(value) != -1;
+    }
+
+    @Override
+    public Long get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return values[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return o instanceof Long ? indexOf(((Long) o).longValue()) : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) != -1;
+    }
+}
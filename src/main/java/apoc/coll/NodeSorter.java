@@ -0,0 +1,252 @@
+package apoc.coll;
+
+import org.neo4j.graphdb.PropertyContainer;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sorts nodes or relationships by one or more properties.
+ * Every sort property is read once per entity into a packed key column (long[], double[], String[] or Object[]),
+ * then an index array is merge-sorted over those columns and the entities are gathered in the resulting order.
+ * A key prefixed with <code>-</code> sorts descending, nulls sort first in ascending order.
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class NodeSorter {
+
+    private static final int INSERTION_SORT = 7;
+    private static final int PARALLEL_GRANULARITY = 8192;
+
+    interface IndexComparator {
+        int compare(int a, int b);
+    }
+
+    /**
+     * @param prop a sort key or a non-empty list of sort keys
+     */
+    static List<String> keys(Object prop) {
+        if (prop instanceof String) return Collections.singletonList((String) prop);
+        if (prop instanceof List && !((List<?>) prop).isEmpty()) {
+            List<String> keys = new ArrayList<>();
+            for (Object key : (List<?>) prop) {
+                if (!(key instanceof String)) throw new IllegalArgumentException("Sort keys must be strings, got " + key + " in " + prop);
+                keys.add((String) key);
+            }
+            return keys;
+        }
+        throw new IllegalArgumentException("Sort by a property name or a non-empty list of property names, got " + prop);
+    }
+
+    static List<PropertyContainer> sort(List<? extends PropertyContainer> entities, List<String> keys) {
+        PropertyContainer[] items = entities.toArray(new PropertyContainer[entities.size()]);
+        int size = items.length;
+        Column[] columns = new Column[keys.size()];
+        for (int c = 0; c < columns.length; c++) {
+            String key = keys.get(c);
+            boolean desc = key.startsWith("-");
+            String prop = desc ? key.substring(1) : key;
+            Object[] values = new Object[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = items[i].getProperty(prop, null);
+            }
+            columns[c] = Column.of(values, desc);
+        }
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        sort(order, comparator(columns), Parallel.isParallel(size));
+
+        List<PropertyContainer> result = new ArrayList<>(size);
+        for (int idx : order) result.add(items[idx]);
+        return result;
+    }
+
+    private static IndexComparator comparator(Column[] columns) {
+        if (columns.length == 1) return columns[0];
+        return (a, b) -> {
+            for (Column column : columns) {
+                int result = column.compare(a, b);
+                if (result != 0) return result;
+            }
+            return 0;
+        };
+    }
+
+    /**
+     * Stable merge sort of an index array, the top levels run as fork-join tasks in parallel mode.
+     */
+    static void sort(int[] order, IndexComparator comparator, boolean parallel) {
+        int[] aux = order.clone();
+        if (parallel) {
+            Parallel.run(() -> new MergeTask(aux, order, 0, order.length, comparator).invoke());
+        } else {
+            mergeSort(aux, order, 0, order.length, comparator);
+        }
+    }
+
+    // sorts dest[low,high) using src as scratch space, both start out with the same content
+    private static void mergeSort(int[] src, int[] dest, int low, int high, IndexComparator comparator) {
+        int length = high - low;
+        if (length < INSERTION_SORT) {
+            for (int i = low + 1; i < high; i++) {
+                for (int j = i; j > low && comparator.compare(dest[j - 1], dest[j]) > 0; j--) {
+                    int tmp = dest[j];
+                    dest[j] = dest[j - 1];
+                    dest[j - 1] = tmp;
+                }
+            }
+            return;
+        }
+        int mid = (low + high) >>> 1;
+        mergeSort(dest, src, low, mid, comparator);
+        mergeSort(dest, src, mid, high, comparator);
+        merge(src, dest, low, mid, high, comparator);
+    }
+
+    private static void merge(int[] src, int[] dest, int low, int mid, int high, IndexComparator comparator) {
+        if (comparator.compare(src[mid - 1], src[mid]) <= 0) {
+            System.arraycopy(src, low, dest, low, high - low);
+            return;
+        }
+        for (int i = low, p = low, q = mid; i < high; i++) {
+            if (q >= high || p < mid && comparator.compare(src[p], src[q]) <= 0) {
+                dest[i] = src[p++];
+            } else {
+                dest[i] = src[q++];
+            }
+        }
+    }
+
+    private static class MergeTask extends RecursiveAction {
+        private final int[] src, dest;
+        private final int low, high;
+        private final IndexComparator comparator;
+
+        MergeTask(int[] src, int[] dest, int low, int high, IndexComparator comparator) {
+            this.src = src;
+            this.dest = dest;
+            this.low = low;
+            this.high = high;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+            if (high - low <= PARALLEL_GRANULARITY) {
+                mergeSort(src, dest, low, high, comparator);
+                return;
+            }
+            int mid = (low + high) >>> 1;
+            ForkJoinTask.invokeAll(new MergeTask(dest, src, low, mid, comparator), new MergeTask(dest, src, mid, high, comparator));
+            merge(src, dest, low, mid, high, comparator);
+        }
+    }
+
+    private static abstract class Column implements IndexComparator {
+        final BitSet nulls;
+        final int sign;
+
+        Column(BitSet nulls, boolean desc) {
+            this.nulls = nulls;
+            this.sign = desc ? -1 : 1;
+        }
+
+        static Column of(Object[] values, boolean desc) {
+            boolean longs = true, numbers = true, strings = true;
+            BitSet nulls = null;
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[i];
+                if (value == null) {
+                    if (nulls == null) nulls = new BitSet(values.length);
+                    nulls.set(i);
+                    continue;
+                }
+                longs &= value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+                numbers &= value instanceof Number;
+                strings &= value instanceof String;
+            }
+            if (longs) return new LongColumn(values, nulls, desc);
+            if (numbers) return new DoubleColumn(values, nulls, desc);
+            if (strings) return new StringColumn(values, nulls, desc);
+            return new ObjectColumn(values, desc);
+        }
+
+        // nulls first, 2 means neither value is null
+        final int compareNulls(int a, int b) {
+            if (nulls == null) return 2;
+            boolean nullA = nulls.get(a), nullB = nulls.get(b);
+            if (nullA) return nullB ? 0 : -1;
+            return nullB ? 1 : 2;
+        }
+    }
+
+    private static class LongColumn extends Column {
+        private final long[] keys;
+
+        LongColumn(Object[] values, BitSet nulls, boolean desc) {
+            super(nulls, desc);
+            keys = new long[values.length];
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) keys[i] = ((Number) values[i]).longValue();
+            }
+        }
+
+        @Override
+        public int compare(int a, int b) {
+            int result = compareNulls(a, b);
+            return sign * (result != 2 ? result : Long.compare(keys[a], keys[b]));
+        }
+    }
+
+    private static class DoubleColumn extends Column {
+        private final double[] keys;
+
+        DoubleColumn(Object[] values, BitSet nulls, boolean desc) {
+            super(nulls, desc);
+            keys = new double[values.length];
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) keys[i] = ((Number) values[i]).doubleValue();
+            }
+        }
+
+        @Override
+        public int compare(int a, int b) {
+            int result = compareNulls(a, b);
+            return sign * (result != 2 ? result : Double.compare(keys[a], keys[b]));
+        }
+    }
+
+    private static class StringColumn extends Column {
+        private final String[] keys;
+
+        StringColumn(Object[] values, BitSet nulls, boolean desc) {
+            super(nulls, desc);
+            keys = new String[values.length];
+            for (int i = 0; i < values.length; i++) {
+                keys[i] = (String) values[i];
+            }
+        }
+
+        @Override
+        public int compare(int a, int b) {
+            int result = compareNulls(a, b);
+            return sign * (result != 2 ? result : keys[a].compareTo(keys[b]));
+        }
+    }
+
+    private static class ObjectColumn extends Column {
+        private final Object[] keys;
+
+        ObjectColumn(Object[] values, boolean desc) {
+            super(null, desc);
+            keys = values;
+        }
+
+        @Override
+        public int compare(int a, int b) {
+            return sign * Coll.compare(keys[a], keys[b]);
+        }
+    }
+}
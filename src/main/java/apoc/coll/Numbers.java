@@ -0,0 +1,163 @@
+package apoc.coll;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Numeric kernel for the apoc.coll aggregations.
+ * Homogeneous lists are unboxed once into a primitive array, all aggregates are then computed in a single pass over it.
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class Numbers {
+
+    /**
+     * @return the values as long[] if all of them are integral numbers, otherwise null
+     */
+    static long[] longs(List<?> list) {
+        if (list.isEmpty()) return new long[0];
+        if (!integral(list.get(0))) return null;
+        long[] result = new long[list.size()];
+        int i = 0;
+        for (Object value : list) {
+            if (!integral(value)) return null;
+            result[i++] = ((Number) value).longValue();
+        }
+        return result;
+    }
+
+    /**
+     * Unboxes a numeric list in a single pass, into a long[] while the values are integral and into a double[]
+     * from the first floating point value on, the integral values read so far are copied over once.
+     * @param skipNulls drop null values, otherwise a null makes the list non-numeric
+     * @return a long[] or double[] with the values, or null if the list contains a non-numeric value
+     */
+    static Object unbox(List<?> list, boolean skipNulls) {
+        int size = list.size(), count = 0;
+        long[] longs = null;
+        double[] doubles = null;
+        for (Object value : list) {
+            if (value == null && skipNulls) continue;
+            if (!(value instanceof Number)) return null;
+            if (doubles == null && integral(value)) {
+                if (longs == null) longs = new long[size];
+                longs[count++] = ((Number) value).longValue();
+                continue;
+            }
+            if (doubles == null) {
+                doubles = new double[size];
+                for (int i = 0; i < count; i++) doubles[i] = longs[i];
+                longs = null;
+            }
+            doubles[count++] = ((Number) value).doubleValue();
+        }
+        if (doubles != null) return count == size ? doubles : Arrays.copyOf(doubles, count);
+        if (longs == null) return new long[0];
+        return count == size ? longs : Arrays.copyOf(longs, count);
+    }
+
+    private static boolean integral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    static double sum(List<? extends Number> list) {
+        Object values = numbers(list);
+        double sum = 0;
+        if (values instanceof long[]) {
+            for (long value : (long[]) values) sum += value;
+        } else {
+            for (double value : (double[]) values) sum += value;
+        }
+        return sum;
+    }
+
+    static long sumLongs(List<? extends Number> list) {
+        Object values = numbers(list);
+        long sum = 0;
+        if (values instanceof long[]) {
+            for (long value : (long[]) values) sum += value;
+        } else {
+            for (double value : (double[]) values) sum += (long) value;
+        }
+        return sum;
+    }
+
+    /**
+     * @return the minimum (or maximum if max is true) of a numeric list, or null if the list is not numeric or empty
+     */
+    static Number extreme(List<?> list, boolean max) {
+        if (list.isEmpty()) return null;
+        Object values = unbox(list, false);
+        if (values instanceof long[]) {
+            long[] longs = (long[]) values;
+            long result = longs[0];
+            for (long value : longs) {
+                if (max ? value > result : value < result) result = value;
+            }
+            return result;
+        }
+        if (values == null) return null;
+        double[] doubles = (double[]) values;
+        int idx = 0;
+        for (int i = 1; i < doubles.length; i++) {
+            if (max ? doubles[i] > doubles[idx] : doubles[i] < doubles[idx]) idx = i;
+        }
+        return (Number) list.get(idx);
+    }
+
+    static Coll.StatsResult stats(List<? extends Number> list) {
+        Object values = numbers(list);
+        return values instanceof long[] ? stats((long[]) values) : stats((double[]) values);
+    }
+
+    private static Coll.StatsResult stats(long[] values) {
+        int count = values.length;
+        if (count == 0) return new Coll.StatsResult(0, 0, null, null, 0, 0);
+        // summed as double like sum(), a long sum overflows e.g. for millions of epoch millis
+        double sum = 0, mean = 0, m2 = 0;
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            long value = values[i];
+            sum += value;
+            if (value < min) min = value;
+            if (value > max) max = value;
+            double delta = value - mean;
+            mean += delta / (i + 1);
+            m2 += delta * (value - mean);
+        }
+        return new Coll.StatsResult(count, sum, min, max, mean, stdev(m2, count));
+    }
+
+    private static Coll.StatsResult stats(double[] values) {
+        int count = values.length;
+        if (count == 0) return new Coll.StatsResult(0, 0, null, null, 0, 0);
+        double sum = 0, min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        double mean = 0, m2 = 0;
+        for (int i = 0; i < count; i++) {
+            double value = values[i];
+            sum += value;
+            if (value < min) min = value;
+            if (value > max) max = value;
+            double delta = value - mean;
+            mean += delta / (i + 1);
+            m2 += delta * (value - mean);
+        }
+        return new Coll.StatsResult(count, sum, min, max, mean, stdev(m2, count));
+    }
+
+    // sample standard deviation, same as Cypher's stdev()
+    private static double stdev(double m2, int count) {
+        return count < 2 ? 0 : Math.sqrt(m2 / (count - 1));
+    }
+
+    // drops null values, fails on non-numeric ones
+    private static Object numbers(List<?> list) {
+        Object values = unbox(list, true);
+        if (values == null) {
+            Object value = list.stream().filter(v -> v != null && !(v instanceof Number)).findFirst().orElse(null);
+            throw new RuntimeException("Not a number " + value);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,53 @@
+package apoc.coll;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs large collection operations on a bounded ForkJoinPool that is separate from the common pool.
+ * Parallel streams and parallel sorts started from within {@link #run(Callable)} execute on that pool.
+ * <p>
+ * Configured globally with the system properties <code>apoc.coll.parallel.threshold</code> (minimum list size, default 100000)
+ * and <code>apoc.coll.parallel.threads</code> (pool size, default number of cores).
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class Parallel {
+
+    static int threshold = Integer.getInteger("apoc.coll.parallel.threshold", 100_000);
+    static final int THREADS = Integer.getInteger("apoc.coll.parallel.threads", Runtime.getRuntime().availableProcessors());
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(Math.max(1, THREADS));
+
+    static boolean isParallel(int size) {
+        return THREADS > 1 && size >= threshold;
+    }
+
+    static <T> T run(Callable<T> task) {
+        try {
+            return POOL.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted parallel collection operation", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new RuntimeException("Error in parallel collection operation", cause);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> List<T> sort(List<T> list, Comparator<? super T> comparator) {
+        T[] array = (T[]) list.toArray();
+        run(() -> {
+            Arrays.parallelSort(array, comparator);
+            return null;
+        });
+        return Arrays.asList(array);
+    }
+}
@@ -0,0 +1,111 @@
+package apoc.coll;
+
+import java.util.*;
+
+/**
+ * Batched membership tests against a sorted list.
+ * Sorted probes are answered by a single galloping merge over the haystack, unsorted ones by a binary search each.
+ * Numeric lists are unboxed into primitive arrays when the batch is large enough to pay for the conversion.
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class SortedSearch {
+
+    /**
+     * @return one flag per probe, true if the sorted haystack contains it
+     */
+    static boolean[] find(List<Object> haystack, List<Object> probes) {
+        int n = haystack.size(), m = probes.size();
+        boolean[] found = new boolean[m];
+        if (n == 0 || m == 0) return found;
+        if ((long) m * SetOperations.GALLOP_RATIO >= n) {
+            long[] longs = Numbers.longs(haystack);
+            long[] values = longs == null ? null : Numbers.longs(probes);
+            if (values != null) {
+                find(longs, values, found);
+                return found;
+            }
+        }
+        Comparator<Object> comparator = Comparators.forList(haystack);
+        boolean sorted = isSorted(probes, comparator);
+        if (sorted && !(haystack instanceof RandomAccess)) {
+            merge(haystack, probes, comparator, found);
+            return found;
+        }
+        List<Object> list = haystack instanceof RandomAccess ? haystack : new ArrayList<>(haystack);
+        int i = 0, pos = 0;
+        for (Object probe : probes) {
+            if (sorted) {
+                pos = SetOperations.gallop(list, pos, n, probe, comparator);
+                found[i++] = pos < n && comparator.compare(list.get(pos), probe) == 0;
+            } else {
+                found[i++] = Collections.binarySearch(list, probe, comparator) >= 0;
+            }
+        }
+        return found;
+    }
+
+    static boolean containsAll(List<Object> haystack, List<Object> probes) {
+        for (boolean found : find(haystack, probes)) {
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    private static void find(long[] haystack, long[] probes, boolean[] found) {
+        boolean sorted = true;
+        for (int i = 1; sorted && i < probes.length; i++) sorted = probes[i - 1] <= probes[i];
+        int pos = 0, n = haystack.length;
+        for (int i = 0; i < probes.length; i++) {
+            if (sorted) {
+                pos = gallop(haystack, pos, n, probes[i]);
+                found[i] = pos < n && haystack[pos] == probes[i];
+            } else {
+                found[i] = Arrays.binarySearch(haystack, probes[i]) >= 0;
+            }
+        }
+    }
+
+    // linear merge for sequential lists, avoids copying them into an ArrayList
+    private static void merge(List<Object> haystack, List<Object> probes, Comparator<Object> comparator, boolean[] found) {
+        Iterator<Object> it = haystack.iterator();
+        Object current = it.next();
+        int i = 0;
+        for (Object probe : probes) {
+            int c;
+            while ((c = comparator.compare(current, probe)) < 0 && it.hasNext()) current = it.next();
+            found[i++] = c == 0;
+        }
+    }
+
+    private static boolean isSorted(List<Object> values, Comparator<Object> comparator) {
+        Object previous = null;
+        boolean first = true;
+        for (Object value : values) {
+            if (!first && comparator.compare(previous, value) > 0) return false;
+            previous = value;
+            first = false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the first index in [from,to) whose value is not less than key, or to if there is none
+     */
+    static int gallop(long[] values, int from, int to, long key) {
+        int low = from, high = from;
+        long bound = 1;
+        while (high < to && values[high] < key) {
+            low = high + 1;
+            high = (int) Math.min(to, from + bound);
+            bound <<= 1;
+        }
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+}
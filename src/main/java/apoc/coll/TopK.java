@@ -0,0 +1,105 @@
+package apoc.coll;
+
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Partial sorting with a binary heap, O(n log k) for the first k elements instead of O(n log n) for a full sort.
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class TopK {
+
+    /**
+     * @return the k smallest values according to the comparator, in order
+     */
+    @SuppressWarnings("unchecked")
+    static <T> List<T> top(Collection<? extends T> values, int k, Comparator<? super T> comparator) {
+        if (k <= 0 || values.isEmpty()) return Collections.emptyList();
+        Object[] kept = new Object[Math.min(k, values.size())];
+        Iterator<? extends T> it = values.iterator();
+        for (int i = 0; i < kept.length; i++) kept[i] = it.next();
+        // max-heap of the k smallest values seen so far, its root is the one to replace next
+        Heap<T> heap = new Heap<>(kept, kept.length, comparator.reversed());
+        while (it.hasNext()) {
+            T value = it.next();
+            if (comparator.compare(value, heap.peek()) < 0) heap.replaceTop(value);
+        }
+        Object[] result = new Object[kept.length];
+        for (int i = result.length - 1; i >= 0; i--) result[i] = heap.poll();
+        return (List<T>) Arrays.asList(result);
+    }
+
+    /**
+     * Heapifies all values in O(n) and then emits the k smallest in order as the heap drains, O(log n) per row.
+     */
+    static <T> Stream<T> stream(Collection<? extends T> values, int k, Comparator<? super T> comparator) {
+        if (k <= 0 || values.isEmpty()) return Stream.empty();
+        Object[] all = values.toArray();
+        Heap<T> heap = new Heap<>(all, all.length, comparator);
+        int count = Math.min(k, all.length);
+        Iterator<T> it = new Iterator<T>() {
+            int remaining = count;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public T next() {
+                if (remaining-- <= 0) throw new NoSuchElementException();
+                return heap.poll();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliterator(it, count, Spliterator.ORDERED), false);
+    }
+
+    private static class Heap<T> {
+        private final Object[] heap;
+        private final Comparator<? super T> comparator;
+        private int size;
+
+        Heap(Object[] values, int size, Comparator<? super T> comparator) {
+            this.heap = values;
+            this.size = size;
+            this.comparator = comparator;
+            for (int i = size / 2 - 1; i >= 0; i--) siftDown(i);
+        }
+
+        @SuppressWarnings("unchecked")
+        T peek() {
+            return (T) heap[0];
+        }
+
+        T poll() {
+            T top = peek();
+            heap[0] = heap[--size];
+            heap[size] = null;
+            if (size > 0) siftDown(0);
+            return top;
+        }
+
+        void replaceTop(T value) {
+            heap[0] = value;
+            siftDown(0);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void siftDown(int idx) {
+            Object value = heap[idx];
+            int half = size >>> 1;
+            while (idx < half) {
+                int child = 2 * idx + 1;
+                int right = child + 1;
+                if (right < size && comparator.compare((T) heap[right], (T) heap[child]) < 0) child = right;
+                if (comparator.compare((T) value, (T) heap[child]) <= 0) break;
+                heap[idx] = heap[child];
+                idx = child;
+            }
+            heap[idx] = value;
+        }
+    }
+}
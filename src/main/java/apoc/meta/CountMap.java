@@ -0,0 +1,73 @@
+package apoc.meta;
+
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongLongMap;
+
+/**
+ * Map from non-negative long keys to long counts on a primitive long map, without boxing or entry objects.
+ * Keys are either token ids or (label, type, label) token id triples packed with {@link #key(int, int, int)}.
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class CountMap {
+
+    static final int TOKEN_BITS = 21;
+    private static final int MAX_TOKEN = (1 << TOKEN_BITS) - 1;
+
+    interface Visitor {
+        void visit(long key, long count);
+    }
+
+    private final PrimitiveLongLongMap counts;
+
+    CountMap() {
+        this(64);
+    }
+
+    CountMap(int capacity) {
+        counts = Primitive.longLongMap(capacity);
+    }
+
+    static long key(int labelA, int type, int labelB) {
+        if (labelA > MAX_TOKEN || type > MAX_TOKEN || labelB > MAX_TOKEN) {
+            throw new IllegalArgumentException("Token id too large for meta counts: " + labelA + "," + type + "," + labelB);
+        }
+        return ((long) labelA << (2 * TOKEN_BITS)) | ((long) type << TOKEN_BITS) | labelB;
+    }
+
+    static int labelA(long key) {
+        return (int) (key >>> (2 * TOKEN_BITS));
+    }
+
+    static int type(long key) {
+        return (int) (key >>> TOKEN_BITS) & MAX_TOKEN;
+    }
+
+    static int labelB(long key) {
+        return (int) key & MAX_TOKEN;
+    }
+
+    void add(long key, long delta) {
+        counts.put(key, counts.containsKey(key) ? counts.get(key) + delta : delta);
+    }
+
+    long get(long key) {
+        return counts.containsKey(key) ? counts.get(key) : 0;
+    }
+
+    int size() {
+        return counts.size();
+    }
+
+    void addAll(CountMap other) {
+        other.forEach(this::add);
+    }
+
+    void forEach(Visitor visitor) {
+        counts.visitEntries((key, count) -> {
+            visitor.visit(key, count);
+            return false;
+        });
+    }
+}
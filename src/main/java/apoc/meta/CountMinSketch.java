@@ -0,0 +1,38 @@
+package apoc.meta;
+
+/**
+ * Count-min sketch of {@link #DEPTH} rows of {@link #WIDTH} counters, frequency estimates only over-count,
+ * by at most 2/WIDTH of the total with probability 1 - 2^-DEPTH.
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class CountMinSketch {
+
+    static final int DEPTH = 4;
+    static final int WIDTH = 256;
+
+    private final long[] counters = new long[DEPTH * WIDTH];
+
+    /**
+     * @return the estimated count of the hashed value including this occurrence
+     */
+    long add(long hash) {
+        int h1 = (int) hash, h2 = (int) (hash >>> 32) | 1;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int slot = row * WIDTH + ((h1 + row * h2) & (WIDTH - 1));
+            min = Math.min(min, ++counters[slot]);
+        }
+        return min;
+    }
+
+    long estimate(long hash) {
+        int h1 = (int) hash, h2 = (int) (hash >>> 32) | 1;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counters[row * WIDTH + ((h1 + row * h2) & (WIDTH - 1))]);
+        }
+        return min;
+    }
+}
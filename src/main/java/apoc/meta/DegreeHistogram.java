@@ -0,0 +1,102 @@
+package apoc.meta;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Degree distribution in constant memory: exact counts for degrees below {@link #EXACT},
+ * power-of-two buckets above, so percentiles of very high degrees are reported as the bucket's upper bound (capped by the max).
+ * Also counts the supernodes, nodes with at least the given degree, and keeps the ids of the nodes with the highest degrees.
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class DegreeHistogram {
+
+    static final int EXACT = 4096;
+    private static final int EXACT_BITS = Integer.numberOfTrailingZeros(EXACT);
+
+    private final long[] exact = new long[EXACT];
+    private final long[] buckets = new long[64];
+    private final int topSize;
+    private final long supernodeDegree;
+    // min-heap of {degree, nodeId}
+    private final PriorityQueue<long[]> top;
+    private long count, total, min = Long.MAX_VALUE, max, supernodes;
+
+    DegreeHistogram(int topSize, long supernodeDegree) {
+        this.topSize = topSize;
+        this.supernodeDegree = supernodeDegree;
+        this.top = new PriorityQueue<>(topSize + 1, (a, b) -> Long.compare(a[0], b[0]));
+    }
+
+    void add(long nodeId, long degree) {
+        count++;
+        total += degree;
+        min = Math.min(min, degree);
+        max = Math.max(max, degree);
+        if (degree >= supernodeDegree) supernodes++;
+        if (degree < EXACT) exact[(int) degree]++;
+        else buckets[63 - Long.numberOfLeadingZeros(degree)]++;
+        if (topSize == 0) return;
+        if (top.size() < topSize) {
+            top.add(new long[] {degree, nodeId});
+        } else if (degree > top.peek()[0]) {
+            top.poll();
+            top.add(new long[] {degree, nodeId});
+        }
+    }
+
+    long count() {
+        return count;
+    }
+
+    long total() {
+        return total;
+    }
+
+    long min() {
+        return count == 0 ? 0 : min;
+    }
+
+    long max() {
+        return max;
+    }
+
+    double mean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * @return the smallest degree such that at least the fraction q of the nodes have that degree or lower
+     */
+    long percentile(double q) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * count)), seen = 0;
+        for (int degree = 0; degree < EXACT; degree++) {
+            seen += exact[degree];
+            if (seen >= rank) return degree;
+        }
+        for (int bit = EXACT_BITS; bit < buckets.length; bit++) {
+            seen += buckets[bit];
+            if (seen >= rank) return Math.min(max, (1L << (bit + 1)) - 1);
+        }
+        return max;
+    }
+
+    long supernodes() {
+        return supernodes;
+    }
+
+    /**
+     * @return the node ids with the highest degrees, highest first
+     */
+    List<Long> topNodes() {
+        List<long[]> entries = new ArrayList<>(top);
+        entries.sort((a, b) -> Long.compare(b[0], a[0]));
+        List<Long> ids = new ArrayList<>(entries.size());
+        for (long[] entry : entries) ids.add(entry[1]);
+        return ids;
+    }
+}
@@ -0,0 +1,148 @@
+package apoc.meta;
+
+import org.neo4j.collection.primitive.PrimitiveIntIterator;
+import org.neo4j.collection.primitive.PrimitiveLongIterator;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.api.ReadOperations;
+import org.neo4j.kernel.api.Statement;
+import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
+import org.neo4j.kernel.impl.api.RelationshipVisitor;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.impl.store.id.IdType;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Meta-graph counts keyed by token ids: occurrences of each label on relationship end-points
+ * and relationships per (start label, type, end label).
+ * <p>
+ * A full count scans the relationship id space, split into ranges that are counted in parallel,
+ * each worker with its own transaction and its own counts, which are merged at the end.
+ * The workers only see committed data, so whatever the store size the uncommitted changes of the calling
+ * transaction are never counted.
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class GraphCounts {
+
+    static final int THREADS = Runtime.getRuntime().availableProcessors();
+    // relationship ids per parallel partition, stores up to this size are scanned by a single worker
+    static long partitionSize = Long.getLong("apoc.meta.scan.partition", 100_000);
+
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "apoc-meta-scan");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    final CountMap labels = new CountMap();
+    final CountMap rels = new CountMap();
+
+    void add(int type, int[] startLabels, int[] endLabels) {
+        for (int label : startLabels) labels.add(label, 1);
+        for (int label : endLabels) labels.add(label, 1);
+        addPairs(type, startLabels, endLabels);
+    }
+
+    // counts the relationship per label pair, end-point labels are registered without being counted
+    void addPairs(int type, int[] startLabels, int[] endLabels) {
+        for (int start : startLabels) {
+            labels.add(start, 0);
+            for (int end : endLabels) {
+                labels.add(end, 0);
+                rels.add(CountMap.key(start, type, end), 1);
+            }
+        }
+    }
+
+    /**
+     * Counts an existing relationship, either with its end-point labels or, for sampled relationships, only its label pairs.
+     */
+    void addRelationship(ReadOperations ops, long relId, boolean countLabels) {
+        RelationshipVisitor<EntityNotFoundException> visitor = (id, type, startNode, endNode) -> {
+            int[] startLabels = labels(ops, startNode), endLabels = labels(ops, endNode);
+            if (countLabels) add(type, startLabels, endLabels);
+            else addPairs(type, startLabels, endLabels);
+        };
+        try {
+            ops.relationshipVisit(relId, visitor);
+        } catch (EntityNotFoundException e) {
+            // deleted concurrently
+        }
+    }
+
+    void addAll(GraphCounts other) {
+        labels.addAll(other.labels);
+        rels.addAll(other.rels);
+    }
+
+    /**
+     * Counts all committed relationships, small stores in a single partition.
+     */
+    static GraphCounts count(GraphDatabaseAPI api) {
+        return scanParallel(api, Sampling.highId(api, IdType.RELATIONSHIP));
+    }
+
+    static GraphCounts scanParallel(GraphDatabaseAPI api, long highId) {
+        ThreadToStatementContextBridge bridge = api.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
+        long partitions = Math.max(1, Math.min((long) THREADS * 4, (highId + partitionSize - 1) / partitionSize));
+        long batch = (highId + partitions - 1) / partitions;
+        List<Future<GraphCounts>> futures = new ArrayList<>();
+        for (long from = 0; from < highId; from += batch) {
+            long start = from, end = Math.min(highId, from + batch);
+            futures.add(POOL.submit(() -> {
+                try (Transaction tx = api.beginTx(); Statement statement = bridge.get()) {
+                    GraphCounts counts = scan(statement.readOperations(), start, end);
+                    tx.success();
+                    return counts;
+                }
+            }));
+        }
+        GraphCounts result = new GraphCounts();
+        try {
+            for (Future<GraphCounts> future : futures) {
+                result.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while scanning relationships", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error scanning relationships", e.getCause());
+        } finally {
+            for (Future<GraphCounts> future : futures) future.cancel(true);
+        }
+        return result;
+    }
+
+    static GraphCounts scan(ReadOperations ops) {
+        GraphCounts counts = new GraphCounts();
+        for (PrimitiveLongIterator it = ops.relationshipsGetAll(); it.hasNext(); ) {
+            counts.addRelationship(ops, it.next(), true);
+        }
+        return counts;
+    }
+
+    static GraphCounts scan(ReadOperations ops, long from, long to) {
+        GraphCounts counts = new GraphCounts();
+        for (long id = from; id < to; id++) {
+            if (ops.relationshipExists(id)) counts.addRelationship(ops, id, true);
+        }
+        return counts;
+    }
+
+    static int[] labels(ReadOperations ops, long node) throws EntityNotFoundException {
+        PrimitiveIntIterator it = ops.nodeGetLabels(node);
+        int[] labels = new int[4];
+        int count = 0;
+        while (it.hasNext()) {
+            if (count == labels.length) labels = Arrays.copyOf(labels, count * 2);
+            labels[count++] = it.next();
+        }
+        return count == labels.length ? labels : Arrays.copyOf(labels, count);
+    }
+}
@@ -0,0 +1,38 @@
+package apoc.meta;
+
+/**
+ * HyperLogLog distinct count estimator with 2^{@link #PRECISION} one-byte registers (1KB, about 3% standard error),
+ * with linear counting for small cardinalities.
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class HyperLogLog {
+
+    static final int PRECISION = 10;
+    private static final int M = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / M);
+
+    private final byte[] registers = new byte[M];
+
+    void add(long hash) {
+        int index = (int) (hash >>> (64 - PRECISION));
+        long rest = (hash << PRECISION) | (1L << (PRECISION - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) registers[index] = rank;
+    }
+
+    long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) zeros++;
+        }
+        double estimate = ALPHA * M * M / sum;
+        if (estimate <= 2.5 * M && zeros > 0) {
+            estimate = M * Math.log((double) M / zeros);
+        }
+        return Math.round(estimate);
+    }
+}
@@ -2,20 +2,26 @@ package apoc.meta;
 
 import apoc.Description;
 import apoc.result.*;
+import org.neo4j.collection.primitive.PrimitiveLongIterator;
 import org.neo4j.graphdb.*;
-import org.neo4j.graphdb.schema.ConstraintDefinition;
-import org.neo4j.graphdb.schema.IndexDefinition;
-import org.neo4j.graphdb.schema.Schema;
 import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.ReadOperations;
+import org.neo4j.kernel.api.Statement;
+import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
+import org.neo4j.kernel.impl.store.id.IdType;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
+import org.neo4j.storageengine.api.Token;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import static java.util.Arrays.asList;
-import static java.util.Collections.min;
 import static java.util.Collections.singletonMap;
 
 public class Meta {
@@ -23,7 +29,7 @@ public class Meta {
     private static final Label[] META = new Label[] {Label.label("Meta")};
 
     @Context
-    public GraphDatabaseService db;
+    public GraphDatabaseAPI db;
 
     @Context
     public KernelTransaction kernelTx;
@@ -63,6 +69,13 @@ public class Meta {
         public long left; // 0,1,
         public long right; // 0,1,many
         public List<String> other;
+        // property value statistics over the sampled nodes
+        public Map<String,Object> types;
+        public double nullRatio;
+        public Object min;
+        public Object max;
+        public long distinct;
+        public List<Object> top;
 
         public MetaResult(String label, String name) {
             this.label = label;
@@ -112,40 +125,92 @@ public class Meta {
     }
 
     @Procedure
-    @Description("apoc.meta.data  - examines a subset of the graph to provide a tabular meta information")
+    @Description("apoc.meta.data  - examines a subset of the graph to provide a tabular meta information, including value statistics of the sampled properties")
     public Stream<MetaResult> data() {
-        // db size, all labels, all rel-types
-        Map<String,Map<String,MetaResult>> labels = new LinkedHashMap<>(100);
-        Schema schema = db.schema();
+        List<Label> labels = new ArrayList<>();
         for (Label label : db.getAllLabels()) {
-            Map<String,MetaResult> properties = new LinkedHashMap<>(50);
-            String labelName = label.name();
-            labels.put(labelName, properties);
-            Iterable<ConstraintDefinition> constraints = schema.getConstraints(label);
-            Set<String> indexed = new LinkedHashSet<>();
-            for (IndexDefinition index : schema.getIndexes(label)) {
-                for (String prop : index.getPropertyKeys()) {
-                    indexed.add(prop);
-                }
-            }
-            try (ResourceIterator<Node> nodes = db.findNodes(label)) {
-                int count = 0;
-                while (nodes.hasNext() && count++ < SAMPLE) {
-                    Node node = nodes.next();
-                    addRelationships(properties, labelName, node);
-                    addProperties(properties, labelName, constraints, indexed, node);
-                }
-            }
+            labels.add(label);
         }
-        return labels.values().stream().flatMap(x -> x.values().stream());
+        return metaData(labels);
+    }
+
+    @Procedure
+    @Description("apoc.meta.dataForLabels(labels) - like apoc.meta.data, restricted to the given labels")
+    public Stream<MetaResult> dataForLabels(@Name("labels") List<String> labels) {
+        return metaData(labels.stream().map(Label::label).collect(Collectors.toList()));
     }
 
-    private void addProperties(Map<String, MetaResult> properties, String labelName, Iterable<ConstraintDefinition> constraints, Set<String> indexed, Node node) {
-        for (String prop : node.getPropertyKeys()) {
-            if (properties.containsKey(prop)) continue;
-            MetaResult res = metaResultForProp(node, labelName, prop);
-            addSchemaInfo(res, prop, constraints, indexed);
-            properties.put(prop,res);
+    // lazy, each label is sampled when the stream reaches it and its rows are emitted right away
+    private Stream<MetaResult> metaData(List<Label> labels) {
+        SchemaInfo schema = SchemaInfo.of(db.schema());
+        return labels.stream().flatMap(label -> labelData(schema, label).stream());
+    }
+
+    private Collection<MetaResult> labelData(SchemaInfo schema, Label label) {
+        Map<String,MetaResult> properties = new LinkedHashMap<>(50);
+        String labelName = label.name();
+        Map<String,SchemaInfo.Flags> schemaFlags = schema.forLabel(labelName);
+        Map<String,PropertyStats> stats = new HashMap<>();
+        long[] ids = sampleNodeIds(label, SAMPLE);
+        for (long id : ids) {
+            Node node = db.getNodeById(id);
+            addRelationships(properties, labelName, node);
+            addProperties(properties, stats, labelName, schemaFlags, node);
+        }
+        for (PropertyStats stat : stats.values()) {
+            stat.finish(ids.length);
+        }
+        return properties.values();
+    }
+
+    public static class SchemaResult {
+        public String label;
+        public String relationshipType;
+        public String property;
+        public boolean index;
+        public boolean unique;
+        public boolean existence;
+
+        public SchemaResult(String label, String relationshipType, String property, SchemaInfo.Flags flags) {
+            this.label = label;
+            this.relationshipType = relationshipType;
+            this.property = property;
+            this.index = flags.index;
+            this.unique = flags.unique;
+            this.existence = flags.existence;
+        }
+    }
+
+    @Procedure
+    @Description("apoc.meta.schema - indexes and constraints per label and property (or relationship type and property) without sampling the graph")
+    public Stream<SchemaResult> schema() {
+        SchemaInfo schema = SchemaInfo.of(db.schema());
+        Stream<SchemaResult> labels = schema.labels.entrySet().stream().flatMap(label -> label.getValue().entrySet().stream()
+                .map(prop -> new SchemaResult(label.getKey(), null, prop.getKey(), prop.getValue())));
+        Stream<SchemaResult> types = schema.types.entrySet().stream().flatMap(type -> type.getValue().entrySet().stream()
+                .map(prop -> new SchemaResult(null, type.getKey(), prop.getKey(), prop.getValue())));
+        return Stream.concat(labels, types);
+    }
+
+    @Procedure
+    @Description("apoc.meta.dataCached(cached) - like apoc.meta.data, if cached is true a snapshot younger than the cache ttl is returned without sampling")
+    public Stream<MetaResult> dataCached(@Name("cached") boolean cached) {
+        return MetaCache.of(db).data(cached, () -> data().collect(Collectors.toList())).stream();
+    }
+
+    private void addProperties(Map<String, MetaResult> properties, Map<String, PropertyStats> stats, String labelName, Map<String, SchemaInfo.Flags> schemaFlags, Node node) {
+        for (Map.Entry<String, Object> entry : node.getAllProperties().entrySet()) {
+            String prop = entry.getKey();
+            PropertyStats stat = stats.get(prop);
+            if (stat == null) {
+                if (properties.containsKey(prop)) continue;
+                MetaResult res = metaResultForProp(node, labelName, prop);
+                addSchemaInfo(res, schemaFlags.getOrDefault(prop, SchemaInfo.NONE));
+                properties.put(prop,res);
+                stat = new PropertyStats(res);
+                stats.put(prop, stat);
+            }
+            stat.add(entry.getValue());
         }
     }
 
@@ -160,8 +225,9 @@ public class Meta {
 
     private void addOtherNodeInfo(Node node, RelationshipType type, MetaResult res) {
         if (res.left == 0) return;
-        Iterator<Relationship> rels = node.getRelationships(type, Direction.OUTGOING).iterator();
-        res.other = toStrings(rels.next().getEndNode().getLabels());
+        try (ResourceIterator<Relationship> rels = ((ResourceIterable<Relationship>) node.getRelationships(type, Direction.OUTGOING)).iterator()) {
+            if (rels.hasNext()) res.other = toStrings(rels.next().getEndNode().getLabels());
+        }
     }
 
     private MetaResult metaResultForRelationship(String labelName, Node node, RelationshipType type) {
@@ -170,21 +236,10 @@ public class Meta {
         return new MetaResult(labelName,type.name()).rel(out,in);
     }
 
-    private void addSchemaInfo(MetaResult res, String prop, Iterable<ConstraintDefinition> constraints, Set<String> indexed) {
-        if (indexed.contains(prop)) {
-            res.index = true;
-        }
-        for (ConstraintDefinition constraint : constraints) {
-            for (String key : constraint.getPropertyKeys()) {
-                if (key.equals(prop)) {
-                    switch (constraint.getConstraintType()) {
-                        case UNIQUENESS: res.unique = true; break;
-                        case NODE_PROPERTY_EXISTENCE:res.existence = true; break;
-                        case RELATIONSHIP_PROPERTY_EXISTENCE: res.existence = true; break;
-                    }
-                }
-            }
-        }
+    private void addSchemaInfo(MetaResult res, SchemaInfo.Flags flags) {
+        res.index = flags.index;
+        res.unique = flags.unique;
+        res.existence = flags.existence;
     }
 
     private MetaResult metaResultForProp(Node node, String labelName, String prop) {
@@ -212,19 +267,314 @@ public class Meta {
     }
     public void sample(GraphDatabaseService db, Sampler sampler, int sampleSize) {
         for (Label label : db.getAllLabelsInUse()) {
-            ResourceIterator<Node> nodes = db.findNodes(label);
             int count = 0;
-            while (nodes.hasNext() && count++ < sampleSize) {
-                Node node = nodes.next();
-                sampler.sample(label,count,node);
+            for (long id : sampleNodeIds(label, sampleSize)) {
+                Node node = db.getNodeById(id);
+                sampler.sample(label,++count,node);
                 for (RelationshipType type : node.getRelationshipTypes()) {
                     sampleRels(sampleSize, sampler, label, count, node, type);
                 }
             }
-            nodes.close();
         }
     }
 
+    // random sample of the label's nodes, see Sampling
+    private long[] sampleNodeIds(Label label, int sampleSize) {
+        try (Statement statement = kernelTx.acquireStatement()) {
+            ReadOperations ops = statement.readOperations();
+            int labelId = ops.labelGetForName(label.name());
+            if (labelId == ReadOperations.NO_SUCH_LABEL) return new long[0];
+            return Sampling.nodes(ops, labelId, sampleSize, Sampling.highId(db, IdType.NODE));
+        }
+    }
+
+    public static class ExportResult {
+        public String file;
+        public long labels;
+        public long relationships;
+        public long properties;
+        public long bytes;
+
+        public ExportResult(String file, long labels, long relationships, long properties, long bytes) {
+            this.file = file;
+            this.labels = labels;
+            this.relationships = relationships;
+            this.properties = properties;
+            this.bytes = bytes;
+        }
+    }
+
+    @Procedure
+    @Description("apoc.meta.export(file) - writes the meta-graph counts, sampled property types and schema flags to a compact binary snapshot file within the apoc.meta.export.directory, needs apoc.meta.export.enabled=true")
+    public Stream<ExportResult> export(@Name("file") String file) {
+        Path path = MetaSnapshot.resolve(file);
+        List<MetaSnapshot.Entry> entries = new ArrayList<>();
+        long labelCount, relCount;
+        try (Statement statement = kernelTx.acquireStatement()) {
+            ReadOperations ops = statement.readOperations();
+            Map<Integer, String> labelNames = tokens(ops.labelsGetAllTokens());
+            Map<Integer, String> typeNames = tokens(ops.relationshipTypesGetAllTokens());
+            GraphCounts counts = GraphCounts.count(db);
+            counts.labels.forEach((labelId, count) -> entries.add(MetaSnapshot.Entry.label(labelNames.get((int) labelId), count)));
+            counts.rels.forEach((key, count) -> entries.add(MetaSnapshot.Entry.relationship(labelNames.get(CountMap.labelA(key)),
+                    typeNames.get(CountMap.type(key)), labelNames.get(CountMap.labelB(key)), count)));
+            labelCount = counts.labels.size();
+            relCount = counts.rels.size();
+        }
+        Set<List<String>> sampled = new HashSet<>();
+        data().filter(row -> !Types.RELATIONSHIP.name().equals(row.type)).forEach(row -> {
+            sampled.add(Arrays.asList(row.label, row.property));
+            entries.add(MetaSnapshot.Entry.property(row.label, row.property, row.type, row.index, row.unique, row.existence));
+        });
+        // indexed or constrained properties that didn't show up in the sample
+        SchemaInfo.of(db.schema()).labels.forEach((label, props) -> props.forEach((prop, flags) -> {
+            if (sampled.add(Arrays.asList(label, prop))) {
+                entries.add(MetaSnapshot.Entry.property(label, prop, null, flags.index, flags.unique, flags.existence));
+            }
+        }));
+        try {
+            long bytes = MetaSnapshot.write(path, entries, System.currentTimeMillis());
+            return Stream.of(new ExportResult(file, labelCount, relCount, sampled.size(), bytes));
+        } catch (IOException e) {
+            throw new RuntimeException("Can't write meta snapshot " + file, e);
+        }
+    }
+
+    @Procedure("apoc.meta.import")
+    @Description("apoc.meta.import(file) - reads a snapshot written by apoc.meta.export as meta-graph")
+    public Stream<GraphResult> importSnapshot(@Name("file") String file) {
+        Map<String, Node> labels = new TreeMap<>();
+        List<Relationship> rels = new ArrayList<>();
+        try (MetaSnapshot.Reader reader = new MetaSnapshot.Reader(MetaSnapshot.resolve(file))) {
+            while (reader.hasNext()) {
+                MetaSnapshot.Entry entry = reader.next();
+                if (entry.kind == MetaSnapshot.LABEL) {
+                    metaNode(labels, entry.key[0]).setProperty("count", entry.count);
+                } else if (entry.kind == MetaSnapshot.RELATIONSHIP) {
+                    Map<String, Object> props = new LinkedHashMap<>();
+                    props.put("type", entry.key[1]);
+                    props.put("count", entry.count);
+                    rels.add(new VirtualRelationship(metaNode(labels, entry.key[0]), metaNode(labels, entry.key[2]), RelationshipType.withName(entry.key[1])).withProperties(props));
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Can't read meta snapshot " + file, e);
+        }
+        return Stream.of(new GraphResult(new ArrayList<>(labels.values()), rels));
+    }
+
+    private Node metaNode(Map<String, Node> labels, String name) {
+        return labels.computeIfAbsent(name, n -> new VirtualNode(new Label[] {Label.label(n), META[0]}, singletonMap("name", n), db));
+    }
+
+    public static class DiffResult {
+        public String kind;
+        public List<String> key;
+        public String change;
+        public Object before;
+        public Object after;
+
+        public DiffResult(MetaSnapshot.Entry before, MetaSnapshot.Entry after) {
+            MetaSnapshot.Entry entry = before == null ? after : before;
+            this.kind = entry.kindName();
+            this.key = Arrays.asList(entry.key);
+            this.change = before == null ? "added" : after == null ? "removed" : "changed";
+            this.before = before == null ? null : before.value();
+            this.after = after == null ? null : after.value();
+        }
+    }
+
+    @Procedure
+    @Description("apoc.meta.diff(fileA,fileB) - compares two snapshots written by apoc.meta.export entry by entry, returns the added, removed and changed labels, relationships and properties")
+    public Stream<DiffResult> diff(@Name("fileA") String fileA, @Name("fileB") String fileB) {
+        Path pathA = MetaSnapshot.resolve(fileA), pathB = MetaSnapshot.resolve(fileB);
+        MetaSnapshot.Reader a, b;
+        try {
+            a = new MetaSnapshot.Reader(pathA);
+        } catch (IOException e) {
+            throw new RuntimeException("Can't read meta snapshot " + fileA, e);
+        }
+        try {
+            b = new MetaSnapshot.Reader(pathB);
+        } catch (IOException e) {
+            closeQuietly(a);
+            throw new RuntimeException("Can't read meta snapshot " + fileB, e);
+        }
+        Iterator<DiffResult> merge = new Iterator<DiffResult>() {
+            MetaSnapshot.Entry left = next(a), right = next(b);
+            DiffResult next = advance();
+
+            private MetaSnapshot.Entry next(MetaSnapshot.Reader reader) {
+                return reader.hasNext() ? reader.next() : null;
+            }
+
+            // merge join of the two sorted files, skips equal entries
+            private DiffResult advance() {
+                while (left != null || right != null) {
+                    int c = left == null ? 1 : right == null ? -1 : left.compareTo(right);
+                    DiffResult result = null;
+                    if (c < 0) {
+                        result = new DiffResult(left, null);
+                        left = next(a);
+                    } else if (c > 0) {
+                        result = new DiffResult(null, right);
+                        right = next(b);
+                    } else {
+                        if (!left.sameValue(right)) result = new DiffResult(left, right);
+                        left = next(a);
+                        right = next(b);
+                    }
+                    if (result != null) return result;
+                }
+                return null;
+            }
+
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            public DiffResult next() {
+                if (next == null) throw new NoSuchElementException();
+                DiffResult result = next;
+                next = advance();
+                return result;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merge, Spliterator.ORDERED), false)
+                .onClose(() -> { closeQuietly(a); closeQuietly(b); });
+    }
+
+    private static void closeQuietly(MetaSnapshot.Reader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    static final long SUPERNODE_DEGREE = Long.getLong("apoc.meta.supernode.degree", 1000);
+    static final int TOP_NODES = 10;
+
+    public static class DegreeResult {
+        public String label;
+        public String type;
+        public String direction;
+        public long count;
+        public long total;
+        public long min;
+        public long max;
+        public double mean;
+        public long p50;
+        public long p90;
+        public long p99;
+        public long p999;
+        public long supernodes;
+        public List<Node> top;
+
+        public DegreeResult(String label, String type, Direction direction, DegreeHistogram histogram, List<Node> top) {
+            this.label = label;
+            this.type = type;
+            this.direction = direction.name();
+            this.count = histogram.count();
+            this.total = histogram.total();
+            this.min = histogram.min();
+            this.max = histogram.max();
+            this.mean = histogram.mean();
+            this.p50 = histogram.percentile(0.5);
+            this.p90 = histogram.percentile(0.9);
+            this.p99 = histogram.percentile(0.99);
+            this.p999 = histogram.percentile(0.999);
+            this.supernodes = histogram.supernodes();
+            this.top = top;
+        }
+    }
+
+    @Procedure
+    @Description("apoc.meta.degrees(label,type,direction) - degree percentiles, supernode count and top nodes by degree, label, type and direction (OUTGOING,INCOMING,BOTH) can be null for all")
+    public Stream<DegreeResult> degrees(@Name("label") String label, @Name("type") String type, @Name("direction") String direction) {
+        Direction dir = direction == null ? Direction.BOTH : Direction.valueOf(direction.toUpperCase());
+        DegreeHistogram histogram = new DegreeHistogram(TOP_NODES, SUPERNODE_DEGREE);
+        try (Statement statement = kernelTx.acquireStatement()) {
+            ReadOperations ops = statement.readOperations();
+            int typeId = type == null ? ReadOperations.ANY_RELATIONSHIP_TYPE : ops.relationshipTypeGetForName(type);
+            int labelId = label == null ? ReadOperations.ANY_LABEL : ops.labelGetForName(label);
+            boolean noType = type != null && typeId == ReadOperations.NO_SUCH_RELATIONSHIP_TYPE;
+            if (label != null && labelId == ReadOperations.NO_SUCH_LABEL) {
+                return Stream.of(new DegreeResult(label, type, dir, histogram, Collections.emptyList()));
+            }
+            PrimitiveLongIterator nodes = label == null ? ops.nodesGetAll() : ops.nodesGetForLabel(labelId);
+            while (nodes.hasNext()) {
+                long nodeId = nodes.next();
+                try {
+                    // uses the relationship group counts of dense nodes instead of iterating their relationships
+                    int degree = noType ? 0 : type == null ? ops.nodeGetDegree(nodeId, dir) : ops.nodeGetDegree(nodeId, dir, typeId);
+                    histogram.add(nodeId, degree);
+                } catch (EntityNotFoundException e) {
+                    // deleted concurrently
+                }
+            }
+        }
+        List<Node> top = new ArrayList<>();
+        for (long nodeId : histogram.topNodes()) {
+            top.add(db.getNodeById(nodeId));
+        }
+        return Stream.of(new DegreeResult(label, type, dir, histogram, top));
+    }
+
+    public static class SampleResult {
+        public String type;
+        public String startLabel;
+        public String endLabel;
+        public long sampled;
+        public long total;
+        public long estimate;
+        public long margin;
+
+        public SampleResult(String type, String startLabel, String endLabel, long sampled, long total, long hits) {
+            this.type = type;
+            this.startLabel = startLabel;
+            this.endLabel = endLabel;
+            this.sampled = sampled;
+            this.total = total;
+            this.estimate = Sampling.estimate(hits, sampled, total);
+            this.margin = Sampling.margin(hits, sampled, total);
+        }
+    }
+
+    @Procedure
+    @Description("apoc.meta.relTypeSample(sampleSize) - samples random relationships per type and estimates the counts per start and end label with a 95% confidence margin")
+    public Stream<SampleResult> relTypeSample(@Name("sample") Long sampleSize) {
+        int sample = (int) sampleSize(sampleSize);
+        List<SampleResult> results = new ArrayList<>();
+        try (Statement statement = kernelTx.acquireStatement()) {
+            ReadOperations ops = statement.readOperations();
+            Map<Integer, String> labelNames = tokens(ops.labelsGetAllTokens());
+            long highId = Sampling.highId(db, IdType.RELATIONSHIP), highNodeId = Sampling.highId(db, IdType.NODE);
+            Map<Token, long[]> samples = new LinkedHashMap<>();
+            List<Integer> scanTypes = new ArrayList<>();
+            for (Iterator<Token> it = ops.relationshipTypesGetAllTokens(); it.hasNext(); ) {
+                Token type = it.next();
+                long[] ids = Sampling.relationships(ops, type.id(), sample, highId, highNodeId);
+                if (ids == null) scanTypes.add(type.id());
+                samples.put(type, ids);
+            }
+            // the types that can't be reached from sampled nodes share one relationship scan
+            Map<Integer, long[]> scanned = scanTypes.isEmpty() ? Collections.emptyMap() : Sampling.scan(ops, scanTypes, sample);
+            samples.forEach((type, sampled) -> {
+                long[] ids = sampled == null ? scanned.get(type.id()) : sampled;
+                long total = ops.countsForRelationship(ReadOperations.ANY_LABEL, type.id(), ReadOperations.ANY_LABEL);
+                if (total == 0) return;
+                GraphCounts counts = new GraphCounts();
+                for (long id : ids) {
+                    counts.addRelationship(ops, id, false);
+                }
+                counts.rels.forEach((key, hits) -> results.add(new SampleResult(type.name(),
+                        labelNames.get(CountMap.labelA(key)), labelNames.get(CountMap.labelB(key)), ids.length, total, hits)));
+            });
+        }
+        return results.stream();
+    }
+
     private void sampleRels(int sampleSize, Sampler sampler, Label label, int count, Node node, RelationshipType type) {
         Direction direction = Direction.OUTGOING;
         int degree = node.getDegree(type, direction);
@@ -239,75 +589,149 @@ public class Meta {
     }
 
     @Procedure
-    @Description("apoc.meta.graph - examines the full graph to create the meta-graph")
+    @Description("apoc.meta.graph - examines the committed graph to create the meta-graph, large stores are scanned in parallel")
     public Stream<GraphResult> graph() {
-        Map<String,Node> labels = new TreeMap<>();
-        Map<List<String>,Relationship> rels = new HashMap<>();
-        for (Relationship rel : db.getAllRelationships()) {
-            addLabels(labels,rel.getStartNode());
-            addLabels(labels,rel.getEndNode());
-            addRel(rels,labels, rel);
+        try (Statement statement = kernelTx.acquireStatement()) {
+            GraphCounts counts = GraphCounts.count(db);
+            return Stream.of(toGraph(statement.readOperations(), counts));
         }
-        return Stream.of(new GraphResult(new ArrayList<>(labels.values()), new ArrayList<>(rels.values())));
     }
 
+    /**
+     * Builds the virtual meta-graph from token id keyed counts, virtual entities are only created here, once per label and pair.
+     */
+    private GraphResult toGraph(ReadOperations ops, GraphCounts counts) {
+        return toGraph(ops, counts, null);
+    }
 
-    @Procedure
-    @Description("apoc.meta.graphSample(sampleSize) - examines a sample graph to create the meta-graph, default sampleSize is 100")
-    public Stream<GraphResult> graphSample(@Name("sample") Long sampleSize ) {
+    /**
+     * @param candidates keys of the label pairs that aren't known to exist, they get a candidate property, null if all are known
+     */
+    private GraphResult toGraph(ReadOperations ops, GraphCounts counts, Set<Long> candidates) {
+        Map<Integer, String> labelNames = tokens(ops.labelsGetAllTokens());
+        Map<Integer, String> typeNames = tokens(ops.relationshipTypesGetAllTokens());
         Map<String, Node> labels = new TreeMap<>();
-        Map<List<String>,Relationship> rels = new HashMap<>();
-        Sampler sampler = new Sampler() {
-            public void sample(Label label, int count, Node node) {
-                mergeMetaNode(label, labels,true);
-            }
-            public void sample(Label label, int count, Node node, RelationshipType type, Direction direction, int degree, Relationship rel) {
-                if (rel!=null) {
-                    addRel(rels, labels, rel);
-                }
-            }
-        };
-        long sample = sampleSize == null || sampleSize < 100 ? SAMPLE : sampleSize;
-        sample(db,sampler, (int) sample);
-        return Stream.of(new GraphResult(new ArrayList<>(labels.values()), new ArrayList<>(rels.values())));
+        Map<Integer, Node> nodesById = new HashMap<>();
+        counts.labels.forEach((labelId, count) -> {
+            String name = labelNames.get((int) labelId);
+            Map<String, Object> props = new LinkedHashMap<>();
+            props.put("name", name);
+            props.put("count", count);
+            Node vNode = new VirtualNode(new Label[] {Label.label(name), META[0]}, props, db);
+            labels.put(name, vNode);
+            nodesById.put((int) labelId, vNode);
+        });
+        List<Relationship> rels = new ArrayList<>(counts.rels.size());
+        counts.rels.forEach((key, count) -> {
+            String typeName = typeNames.get(CountMap.type(key));
+            Node nodeA = nodesById.get(CountMap.labelA(key));
+            Node nodeB = nodesById.get(CountMap.labelB(key));
+            Map<String, Object> props = new LinkedHashMap<>();
+            props.put("type", typeName);
+            props.put("count", count);
+            if (candidates != null) props.put("candidate", candidates.contains(key));
+            rels.add(new VirtualRelationship(nodeA, nodeB, RelationshipType.withName(typeName)).withProperties(props));
+        });
+        return new GraphResult(new ArrayList<>(labels.values()), rels);
     }
 
-    private Node mergeMetaNode(Label label, Map<String, Node> labels, boolean increment) {
-        String name = label.name();
-        Node vNode = labels.get(name);
-        if (vNode == null) {
-            vNode = new VirtualNode(new Label[] {label,META[0]}, Collections.singletonMap("name", name),db);
-            labels.put(name, vNode);
+    private static Map<Integer, String> tokens(Iterator<Token> it) {
+        Map<Integer, String> names = new HashMap<>();
+        while (it.hasNext()) {
+            Token token = it.next();
+            names.put(token.id(), token.name());
+        }
+        return names;
+    }
+
+
+    @Procedure
+    @Description("apoc.meta.graphCached(cached) - like apoc.meta.graph, if cached is true a snapshot younger than the cache ttl is returned without scanning")
+    public Stream<GraphResult> graphCached(@Name("cached") boolean cached) {
+        try (Statement statement = kernelTx.acquireStatement()) {
+            GraphCounts counts = MetaCache.of(db).graph(cached, () -> GraphCounts.count(db));
+            return Stream.of(toGraph(statement.readOperations(), counts));
         }
-        if (increment) vNode.setProperty("count",((int)vNode.getProperty("count",0))+1);
-        return vNode;
-    }
-
-    private void addRel(Map<List<String>, Relationship> rels, Map<String, Node> labels, Relationship rel) {
-        String typeName = rel.getType().name();
-        Node startNode = rel.getStartNode();
-        Node endNode = rel.getEndNode();
-        for (Label labelA : startNode.getLabels()) {
-            Node nodeA = mergeMetaNode(labelA,labels,false);
-            for (Label labelB : endNode.getLabels()) {
-                List<String> key = asList(labelA.name(), labelB.name(), typeName);
-                Relationship vRel = rels.get(key);
-                if (vRel==null) {
-                    Node nodeB = mergeMetaNode(labelB,labels,false);
-                    vRel = new VirtualRelationship(nodeA,nodeB,rel.getType()).withProperties(singletonMap("type",typeName));
-                    rels.put(key,vRel);
+    }
+
+    @Procedure
+    @Description("apoc.meta.graphStats - builds the meta-graph from the database statistics (count store) only, relationship counts are upper bounds, label pairs the counts can't confirm are returned with candidate:true and may not exist")
+    public Stream<GraphResult> graphStats() {
+        try (Statement statement = kernelTx.acquireStatement()) {
+            ReadOperations ops = statement.readOperations();
+            GraphCounts counts = new GraphCounts();
+            Set<Long> candidates = new HashSet<>();
+            List<Integer> labels = new ArrayList<>();
+            for (Iterator<Token> it = ops.labelsGetAllTokens(); it.hasNext(); ) {
+                int labelId = it.next().id();
+                if (ops.countsForNode(labelId) > 0) labels.add(labelId);
+            }
+            for (Iterator<Token> it = ops.relationshipTypesGetAllTokens(); it.hasNext(); ) {
+                int typeId = it.next().id();
+                long total = ops.countsForRelationship(ReadOperations.ANY_LABEL, typeId, ReadOperations.ANY_LABEL);
+                if (total == 0) continue;
+                for (int start : labels) {
+                    long out = ops.countsForRelationship(start, typeId, ReadOperations.ANY_LABEL);
+                    if (out == 0) continue;
+                    // label count as in apoc.meta.graph: relationship end-points with that label
+                    counts.labels.add(start, out);
+                    for (int end : labels) {
+                        long in = ops.countsForRelationship(ReadOperations.ANY_LABEL, typeId, end);
+                        if (in == 0) continue;
+                        // the count store only keeps counts with one side labeled, the pair surely exists if out and in overlap
+                        long key = CountMap.key(start, typeId, end);
+                        if (out + in <= total) candidates.add(key);
+                        counts.rels.add(key, Math.min(out, in));
+                    }
+                }
+                for (int end : labels) {
+                    long in = ops.countsForRelationship(ReadOperations.ANY_LABEL, typeId, end);
+                    if (in > 0) counts.labels.add(end, in);
                 }
-                vRel.setProperty("count",((int)vRel.getProperty("count",0))+1);
             }
+            return Stream.of(toGraph(ops, counts, candidates));
         }
     }
 
-    private void addLabels(Map<String, Node> labels, Node node) {
-        for (Label label : node.getLabels()) {
-            mergeMetaNode(label, labels,true);
+    @Procedure
+    @Description("apoc.meta.graphSample(sampleSize) - examines a random sample of each label's nodes to create the meta-graph, default sampleSize is 100")
+    public Stream<GraphResult> graphSample(@Name("sample") Long sampleSize ) {
+        try (Statement statement = kernelTx.acquireStatement()) {
+            return Stream.of(toGraph(statement.readOperations(), sampleCounts(statement.readOperations(), sampleSize(sampleSize))));
         }
     }
 
+    @Procedure
+    @Description("apoc.meta.graphSampleCached(sampleSize,cached) - like apoc.meta.graphSample, if cached is true a snapshot younger than the cache ttl is returned without sampling")
+    public Stream<GraphResult> graphSampleCached(@Name("sample") Long sampleSize, @Name("cached") boolean cached) {
+        try (Statement statement = kernelTx.acquireStatement()) {
+            ReadOperations ops = statement.readOperations();
+            long sample = sampleSize(sampleSize);
+            GraphCounts counts = MetaCache.of(db).sample(cached, sample, () -> sampleCounts(ops, sample));
+            return Stream.of(toGraph(ops, counts));
+        }
+    }
+
+    private long sampleSize(Long sampleSize) {
+        return sampleSize == null || sampleSize < 100 ? SAMPLE : sampleSize;
+    }
+
+    private GraphCounts sampleCounts(ReadOperations ops, long sampleSize) {
+        GraphCounts counts = new GraphCounts();
+        Sampler sampler = new Sampler() {
+            public void sample(Label label, int count, Node node) {
+                counts.labels.add(ops.labelGetForName(label.name()), 1);
+            }
+            public void sample(Label label, int count, Node node, RelationshipType type, Direction direction, int degree, Relationship rel) {
+                if (rel!=null) {
+                    counts.addRelationship(ops, rel.getId(), false);
+                }
+            }
+        };
+        sample(db,sampler, (int) sampleSize);
+        return counts;
+    }
+
     static class RelInfo {
         final Set<String> properties = new HashSet<>();
         final NodeInfo from,to;
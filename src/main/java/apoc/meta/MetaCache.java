@@ -0,0 +1,213 @@
+package apoc.meta;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.kernel.api.ReadOperations;
+import org.neo4j.kernel.api.Statement;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Per-database snapshots of the meta procedures' results, reused until they are older than the ttl
+ * ({@code apoc.meta.cache.ttl} seconds) or marked stale.
+ * <p>
+ * With {@code apoc.meta.cache.incremental}, or {@link #incremental(boolean)} per cache, a transaction event handler keeps
+ * the exact meta-graph counts up to date by adding the relationships created in each committed transaction.
+ * Deleted relationships and label changes on connected nodes mark the meta-graph stale, new labels, types or property keys
+ * mark the data snapshot stale. Samples are approximate anyway and only expire with the ttl.
+ * Snapshots are never modified after they were published, updates replace them.
+ * The meta-graph is computed from committed data, a transaction that commits while it is computed may or may not be part
+ * of it, so it is computed again, a few times at most, before it is published stale.
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class MetaCache {
+
+    static final long TTL = TimeUnit.SECONDS.toMillis(Long.getLong("apoc.meta.cache.ttl", 60));
+    static final boolean INCREMENTAL = Boolean.getBoolean("apoc.meta.cache.incremental");
+    static final int COMPUTE_ATTEMPTS = 3;
+
+    private static final Map<GraphDatabaseService, MetaCache> CACHES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    static class Snapshot<T> {
+        final T value;
+        final long created;
+        final Set<String> names;
+        volatile boolean stale;
+
+        Snapshot(T value, long created, Set<String> names) {
+            this.value = value;
+            this.created = created;
+            this.names = names;
+        }
+
+        boolean fresh() {
+            return !stale && System.currentTimeMillis() - created < TTL;
+        }
+    }
+
+    private volatile Snapshot<GraphCounts> graph;
+    private volatile Snapshot<List<Meta.MetaResult>> data;
+    private final Map<Long, Snapshot<GraphCounts>> samples = new ConcurrentHashMap<>();
+    // commits that changed or may have changed the meta-graph, guarded by this
+    private long generation;
+    private final GraphDatabaseAPI db;
+    private Updater updater;
+
+    private MetaCache(GraphDatabaseAPI db) {
+        this.db = db;
+    }
+
+    static MetaCache of(GraphDatabaseAPI db) {
+        return CACHES.computeIfAbsent(db, key -> new MetaCache(db).incremental(INCREMENTAL));
+    }
+
+    /**
+     * Starts or stops maintaining the meta-graph with the changes of committed transactions.
+     */
+    synchronized MetaCache incremental(boolean enabled) {
+        if (enabled && updater == null) {
+            updater = new Updater(db);
+            db.registerTransactionEventHandler(updater);
+        } else if (!enabled && updater != null) {
+            db.unregisterTransactionEventHandler(updater);
+            updater = null;
+        }
+        return this;
+    }
+
+    /**
+     * @param compute computes the counts of the committed data
+     */
+    GraphCounts graph(boolean cached, Supplier<GraphCounts> compute) {
+        Snapshot<GraphCounts> snapshot = graph;
+        if (cached && snapshot != null && snapshot.fresh()) return snapshot.value;
+        for (int attempt = 1; ; attempt++) {
+            long before;
+            synchronized (this) {
+                before = generation;
+            }
+            GraphCounts counts = compute.get();
+            synchronized (this) {
+                // deltas of commits during the computation were applied to the previous snapshot and would be lost
+                boolean changed = generation != before;
+                if (changed && attempt < COMPUTE_ATTEMPTS) continue;
+                snapshot = new Snapshot<>(counts, System.currentTimeMillis(), null);
+                snapshot.stale = changed;
+                graph = snapshot;
+                return counts;
+            }
+        }
+    }
+
+    GraphCounts sample(boolean cached, long sampleSize, Supplier<GraphCounts> compute) {
+        Snapshot<GraphCounts> snapshot = samples.get(sampleSize);
+        if (cached && snapshot != null && snapshot.fresh()) return snapshot.value;
+        snapshot = new Snapshot<>(compute.get(), System.currentTimeMillis(), null);
+        samples.put(sampleSize, snapshot);
+        return snapshot.value;
+    }
+
+    List<Meta.MetaResult> data(boolean cached, Supplier<List<Meta.MetaResult>> compute) {
+        Snapshot<List<Meta.MetaResult>> snapshot = data;
+        if (cached && snapshot != null && snapshot.fresh()) return snapshot.value;
+        List<Meta.MetaResult> rows = Collections.unmodifiableList(compute.get());
+        Set<String> names = new HashSet<>();
+        for (Meta.MetaResult row : rows) {
+            names.add(row.label);
+            names.add(row.property);
+            if (row.other != null) names.addAll(row.other);
+        }
+        data = new Snapshot<>(rows, System.currentTimeMillis(), names);
+        return rows;
+    }
+
+    boolean isEmpty() {
+        return graph == null && data == null && samples.isEmpty();
+    }
+
+    static class Change {
+        final GraphCounts delta = new GraphCounts();
+        final Set<String> names = new HashSet<>();
+        boolean graphStale;
+    }
+
+    class Updater implements TransactionEventHandler<Change> {
+        private final ThreadToStatementContextBridge bridge;
+
+        Updater(GraphDatabaseAPI db) {
+            this.bridge = db.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
+        }
+
+        @Override
+        public Change beforeCommit(TransactionData txData) throws Exception {
+            // nothing cached to update, afterCommit still counts the commit as one that may have changed the meta-graph
+            if (isEmpty()) return null;
+            Change change = new Change();
+            change.graphStale = txData.deletedRelationships().iterator().hasNext();
+            Set<Node> created = new HashSet<>();
+            for (Node node : txData.createdNodes()) created.add(node);
+            // relationships of nodes created in this transaction are counted with their final labels
+            for (LabelEntry entry : txData.assignedLabels()) {
+                change.names.add(entry.label().name());
+                change.graphStale |= isConnected(txData, created, entry.node());
+            }
+            for (LabelEntry entry : txData.removedLabels()) {
+                change.graphStale |= isConnected(txData, created, entry.node());
+            }
+            for (PropertyEntry<Node> entry : txData.assignedNodeProperties()) {
+                change.names.add(entry.key());
+            }
+            try (Statement statement = bridge.get()) {
+                ReadOperations ops = statement.readOperations();
+                for (Relationship rel : txData.createdRelationships()) {
+                    change.names.add(rel.getType().name());
+                    if (!change.graphStale) change.delta.addRelationship(ops, rel.getId(), true);
+                }
+            }
+            return change;
+        }
+
+        private boolean isConnected(TransactionData txData, Set<Node> created, Node node) {
+            return !created.contains(node) && !txData.isDeleted(node) && node.getDegree() > 0;
+        }
+
+        @Override
+        public void afterCommit(TransactionData txData, Change change) {
+            synchronized (MetaCache.this) {
+                if (change == null || change.graphStale || change.delta.rels.size() > 0) generation++;
+                if (change == null) return;
+                Snapshot<GraphCounts> snapshot = graph;
+                if (snapshot != null) {
+                    if (change.graphStale) {
+                        snapshot.stale = true;
+                    } else if (change.delta.rels.size() > 0) {
+                        GraphCounts counts = new GraphCounts();
+                        counts.addAll(snapshot.value);
+                        counts.addAll(change.delta);
+                        graph = new Snapshot<>(counts, snapshot.created, null);
+                    }
+                }
+            }
+            Snapshot<List<Meta.MetaResult>> dataSnapshot = data;
+            if (dataSnapshot != null && !dataSnapshot.names.containsAll(change.names)) {
+                dataSnapshot.stale = true;
+            }
+        }
+
+        @Override
+        public void afterRollback(TransactionData txData, Change change) {
+        }
+    }
+}
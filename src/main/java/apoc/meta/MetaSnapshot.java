@@ -0,0 +1,246 @@
+package apoc.meta;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Compact binary meta-graph snapshot: label counts, relationship counts per (start label, type, end label)
+ * and property types with schema flags per (label, property).
+ * <p>
+ * Layout: magic, format version (short), creation time (long), then entries sorted by kind and key, terminated by kind 0.
+ * An entry is its kind (byte), its key strings (int length + UTF-8 bytes each) and its value:
+ * a count (long) for labels and relationships, the type (string) and schema flags (byte) for properties.
+ * Because entries are sorted, two snapshots are compared by merging both files entry by entry.
+ * <p>
+ * Snapshot files are disabled unless the system property {@code apoc.meta.export.enabled} is true, file names are resolved
+ * within the directory {@code apoc.meta.export.directory} (default {@code meta}) and can't point outside of it.
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class MetaSnapshot {
+
+    static final int MAGIC = 0x41504d53; // "APMS"
+    static final short VERSION = 1;
+    private static final int BUFFER = 64 * 1024;
+
+    static final byte END = 0, LABEL = 1, RELATIONSHIP = 2, PROPERTY = 3;
+    static final byte INDEX = 1, UNIQUE = 2, EXISTENCE = 4;
+
+    static class Entry implements Comparable<Entry> {
+        final byte kind;
+        final String[] key;
+        final long count;
+        final String type;
+        final byte flags;
+
+        Entry(byte kind, String[] key, long count, String type, byte flags) {
+            this.kind = kind;
+            this.key = key;
+            this.count = count;
+            this.type = type;
+            this.flags = flags;
+        }
+
+        static Entry label(String label, long count) {
+            return new Entry(LABEL, new String[] {label}, count, null, (byte) 0);
+        }
+
+        static Entry relationship(String start, String type, String end, long count) {
+            return new Entry(RELATIONSHIP, new String[] {start, type, end}, count, null, (byte) 0);
+        }
+
+        static Entry property(String label, String property, String type, boolean index, boolean unique, boolean existence) {
+            byte flags = (byte) ((index ? INDEX : 0) | (unique ? UNIQUE : 0) | (existence ? EXISTENCE : 0));
+            return new Entry(PROPERTY, new String[] {label, property}, 0, type == null ? "" : type, flags);
+        }
+
+        String kindName() {
+            return kind == LABEL ? "LABEL" : kind == RELATIONSHIP ? "RELATIONSHIP" : "PROPERTY";
+        }
+
+        boolean sameValue(Entry other) {
+            return kind == PROPERTY ? type.equals(other.type) && flags == other.flags : count == other.count;
+        }
+
+        Object value() {
+            if (kind != PROPERTY) return count;
+            Map<String, Object> value = new LinkedHashMap<>();
+            value.put("type", type);
+            value.put("index", (flags & INDEX) != 0);
+            value.put("unique", (flags & UNIQUE) != 0);
+            value.put("existence", (flags & EXISTENCE) != 0);
+            return value;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (kind != other.kind) return Byte.compare(kind, other.kind);
+            for (int i = 0; i < key.length; i++) {
+                int c = key[i].compareTo(other.key[i]);
+                if (c != 0) return c;
+            }
+            return 0;
+        }
+    }
+
+    static Path resolve(String file) {
+        if (!Boolean.getBoolean("apoc.meta.export.enabled")) {
+            throw new RuntimeException("Meta snapshot files are disabled, enable them with the system property apoc.meta.export.enabled=true");
+        }
+        if (file == null) throw new IllegalArgumentException("No meta snapshot file given");
+        Path directory = Paths.get(System.getProperty("apoc.meta.export.directory", "meta")).toAbsolutePath().normalize();
+        Path path = directory.resolve(file).normalize();
+        if (!path.startsWith(directory) || path.equals(directory)) {
+            throw new IllegalArgumentException("Meta snapshot file " + file + " is not within the snapshot directory " + directory);
+        }
+        return path;
+    }
+
+    /**
+     * Writes the entries in sorted order, returns the file size.
+     */
+    static long write(Path file, List<Entry> entries, long created) throws IOException {
+        List<Entry> sorted = new ArrayList<>(entries);
+        Collections.sort(sorted);
+        Files.createDirectories(file.getParent());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+            buffer.putInt(MAGIC).putShort(VERSION).putLong(created);
+            for (Entry entry : sorted) {
+                ensure(channel, buffer, 1);
+                buffer.put(entry.kind);
+                for (String key : entry.key) writeString(channel, buffer, key);
+                if (entry.kind == PROPERTY) {
+                    writeString(channel, buffer, entry.type);
+                    ensure(channel, buffer, 1);
+                    buffer.put(entry.flags);
+                } else {
+                    ensure(channel, buffer, 8);
+                    buffer.putLong(entry.count);
+                }
+            }
+            ensure(channel, buffer, 1);
+            buffer.put(END);
+            flush(channel, buffer);
+            return channel.size();
+        }
+    }
+
+    private static void writeString(FileChannel channel, ByteBuffer buffer, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensure(channel, buffer, 4);
+        buffer.putInt(bytes.length);
+        for (int offset = 0; offset < bytes.length; ) {
+            ensure(channel, buffer, 1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private static void ensure(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) flush(channel, buffer);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Streams the entries of a snapshot file in their sorted order, holding only a buffer in memory.
+     */
+    static class Reader implements Iterator<Entry>, AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+        final long created;
+        private Entry next;
+
+        Reader(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            buffer.flip();
+            try {
+                require(14);
+                if (buffer.getInt() != MAGIC) throw new IOException("Not a meta snapshot file: " + file);
+                short version = buffer.getShort();
+                if (version != VERSION) throw new IOException("Unsupported meta snapshot version " + version + " in " + file);
+                created = buffer.getLong();
+                next = read();
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public Entry next() {
+            if (next == null) throw new NoSuchElementException();
+            Entry entry = next;
+            try {
+                next = read();
+            } catch (IOException e) {
+                throw new RuntimeException("Error reading meta snapshot", e);
+            }
+            return entry;
+        }
+
+        private Entry read() throws IOException {
+            require(1);
+            byte kind = buffer.get();
+            switch (kind) {
+                case END: return null;
+                case LABEL: return new Entry(kind, new String[] {readString()}, readLong(), null, (byte) 0);
+                case RELATIONSHIP: return new Entry(kind, new String[] {readString(), readString(), readString()}, readLong(), null, (byte) 0);
+                case PROPERTY:
+                    String[] key = {readString(), readString()};
+                    String type = readString();
+                    require(1);
+                    return new Entry(kind, key, 0, type, buffer.get());
+                default: throw new IOException("Corrupt meta snapshot, unknown entry kind " + kind);
+            }
+        }
+
+        private long readLong() throws IOException {
+            require(8);
+            return buffer.getLong();
+        }
+
+        private String readString() throws IOException {
+            require(4);
+            byte[] bytes = new byte[buffer.getInt()];
+            for (int offset = 0; offset < bytes.length; ) {
+                require(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.get(bytes, offset, length);
+                offset += length;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return;
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) throw new IOException("Truncated meta snapshot");
+            }
+            buffer.flip();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package apoc.meta;
+
+import apoc.coll.Coll;
+
+import java.lang.reflect.Array;
+import java.util.*;
+
+/**
+ * Value statistics of one property over the sampled nodes of a label, in constant memory per property:
+ * type distribution, presence, min/max, a {@link HyperLogLog} distinct count and the most frequent values
+ * tracked with a {@link CountMinSketch}.
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class PropertyStats {
+
+    static final int TOP = 5;
+
+    private final Meta.MetaResult result;
+    private final long[] types = new long[Meta.Types.values().length];
+    private final HyperLogLog distinct = new HyperLogLog();
+    private final CountMinSketch frequencies = new CountMinSketch();
+    private final Map<Object, Long> top = new HashMap<>();
+    private long count;
+    private Object min, max;
+
+    PropertyStats(Meta.MetaResult result) {
+        this.result = result;
+    }
+
+    void add(Object value) {
+        count++;
+        types[Meta.Types.of(value).ordinal()]++;
+        long hash = hash(value);
+        distinct.add(hash);
+        if (value.getClass().isArray()) return;
+        if (min == null || Coll.compare(value, min) < 0) min = value;
+        if (max == null || Coll.compare(value, max) > 0) max = value;
+        long frequency = frequencies.add(hash);
+        if (top.containsKey(value) || top.size() < TOP) {
+            top.put(value, frequency);
+            return;
+        }
+        Map.Entry<Object, Long> least = null;
+        for (Map.Entry<Object, Long> entry : top.entrySet()) {
+            if (least == null || entry.getValue() < least.getValue()) least = entry;
+        }
+        if (frequency > least.getValue()) {
+            top.remove(least.getKey());
+            top.put(value, frequency);
+        }
+    }
+
+    /**
+     * Writes the statistics into the result row, sampled is the number of sampled nodes of the label.
+     */
+    void finish(long sampled) {
+        Map<String, Object> typeCounts = new LinkedHashMap<>();
+        int dominant = 0;
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == 0) continue;
+            typeCounts.put(Meta.Types.values()[i].name(), types[i]);
+            if (types[i] > types[dominant]) dominant = i;
+        }
+        if (types[dominant] > 0) result.type = Meta.Types.values()[dominant].name();
+        result.types = typeCounts;
+        result.nullRatio = sampled == 0 ? 0 : 1 - (double) count / sampled;
+        result.min = min;
+        result.max = max;
+        result.distinct = Math.min(distinct.estimate(), count);
+        List<Map.Entry<Object, Long>> entries = new ArrayList<>(top.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        List<Object> topValues = new ArrayList<>(entries.size());
+        for (Map.Entry<Object, Long> entry : entries) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("value", entry.getKey());
+            row.put("count", entry.getValue());
+            topValues.add(row);
+        }
+        result.top = topValues;
+    }
+
+    static long hash(Object value) {
+        if (value == null) return 0;
+        if (value.getClass().isArray()) {
+            long hash = 1;
+            for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                hash = hash * 31 + hash(Array.get(value, i));
+            }
+            return mix(hash);
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            // integral floats hash like the equal integer
+            return number == (long) number ? mix(Double.doubleToLongBits((long) number)) : mix(Double.doubleToLongBits(number));
+        }
+        if (value instanceof Number) return mix(Double.doubleToLongBits(((Number) value).longValue()));
+        if (value instanceof String) {
+            String string = (String) value;
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < string.length(); i++) {
+                hash = (hash ^ string.charAt(i)) * 0x100000001b3L;
+            }
+            return mix(hash);
+        }
+        return mix(value.hashCode());
+    }
+
+    // murmur3 finalizer, spreads the bits over the whole long
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9ac1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
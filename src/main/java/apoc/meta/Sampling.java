@@ -0,0 +1,208 @@
+package apoc.meta;
+
+import org.neo4j.collection.primitive.PrimitiveLongIterator;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.kernel.api.ReadOperations;
+import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
+import org.neo4j.kernel.impl.api.RelationshipVisitor;
+import org.neo4j.kernel.impl.store.id.IdGeneratorFactory;
+import org.neo4j.kernel.impl.store.id.IdType;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.storageengine.api.Token;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Uniform random samples of node ids per label and relationship ids per type.
+ * <p>
+ * When the label (or type) covers at least 1/{@link #PROBE_RATIO} of the id space, random ids are probed directly, which
+ * touches only about sampleSize * PROBE_RATIO records. Sparse labels use a reservoir sample over the label scan store,
+ * which reads ids only, sparse relationship types are reached from a sample of the nodes they start or end at. Both are unbiased, unlike taking the first nodes, which are always the oldest ones on the same pages.
+ * Sampled ids are returned sorted so the records are read in store order.
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class Sampling {
+
+    static final int PROBE_RATIO = 16;
+    // z-score of the 95% confidence interval
+    static final double Z95 = 1.96;
+
+    static long highId(GraphDatabaseAPI api, IdType type) {
+        return api.getDependencyResolver().resolveDependency(IdGeneratorFactory.class).get(type).getHighId();
+    }
+
+    static long[] nodes(ReadOperations ops, int labelId, int sampleSize, long highId) {
+        long total = ops.countsForNode(labelId);
+        if (total > sampleSize && total * PROBE_RATIO >= highId) {
+            long[] ids = probe(highId, sampleSize, id -> ops.nodeHasLabel(id, labelId));
+            if (ids != null) return ids;
+        }
+        return reservoir(ops.nodesGetForLabel(labelId), sampleSize);
+    }
+
+    /**
+     * Dense types are probed, sparse types are sampled through the nodes of a label all their relationships start or end at.
+     * @return sorted sample of relationship ids of the type, or null if the type can only be sampled by a scan, see {@link #scan}
+     */
+    static long[] relationships(ReadOperations ops, int typeId, int sampleSize, long highId, long highNodeId) {
+        long total = ops.countsForRelationship(ReadOperations.ANY_LABEL, typeId, ReadOperations.ANY_LABEL);
+        if (total == 0) return new long[0];
+        if (total > sampleSize && total * PROBE_RATIO >= highId) {
+            int[] type = new int[1];
+            RelationshipVisitor<RuntimeException> visitor = (relId, relType, startNode, endNode) -> type[0] = relType;
+            long[] ids = probe(highId, sampleSize, id -> {
+                ops.relationshipVisit(id, visitor);
+                return type[0] == typeId;
+            });
+            if (ids != null) return ids;
+        }
+        return fromNodes(ops, typeId, total, sampleSize, highId, highNodeId);
+    }
+
+    /**
+     * Samples the nodes of the smallest label that all relationships of the type start (or end) at and takes all their
+     * relationships of that type, so each relationship is included with the same probability. The node sample is sized to
+     * yield about sampleSize relationships, a reservoir cuts the result down to sampleSize.
+     * @return null if no label covers the type or if the node sample would be larger than the relationship store
+     */
+    static long[] fromNodes(ReadOperations ops, int typeId, long total, int sampleSize, long highId, long highNodeId) {
+        int label = ReadOperations.NO_SUCH_LABEL;
+        Direction direction = null;
+        long nodes = Long.MAX_VALUE;
+        for (Iterator<Token> it = ops.labelsGetAllTokens(); it.hasNext(); ) {
+            int id = it.next().id();
+            long count = ops.countsForNode(id);
+            if (count >= nodes) continue;
+            if (ops.countsForRelationship(id, typeId, ReadOperations.ANY_LABEL) == total) direction = Direction.OUTGOING;
+            else if (ops.countsForRelationship(ReadOperations.ANY_LABEL, typeId, id) == total) direction = Direction.INCOMING;
+            else continue;
+            label = id;
+            nodes = count;
+        }
+        if (direction == null) return null;
+        long nodeSample = Math.min(nodes, Math.max(1, (long) Math.ceil((double) sampleSize * nodes / total)));
+        if (nodeSample > highId) return null;
+        long[] nodeIds = nodes(ops, label, (int) nodeSample, highNodeId);
+        Reservoir reservoir = new Reservoir(sampleSize);
+        for (long nodeId : nodeIds) {
+            try {
+                PrimitiveLongIterator rels = ops.nodeGetRelationships(nodeId, direction, typeId);
+                while (rels.hasNext()) reservoir.add(rels.next());
+            } catch (EntityNotFoundException e) {
+                // deleted concurrently
+            }
+        }
+        return reservoir.ids();
+    }
+
+    /**
+     * One pass over all relationships, filling a reservoir for each of the types.
+     * @return sorted sample of relationship ids per type id
+     */
+    static Map<Integer, long[]> scan(ReadOperations ops, Collection<Integer> typeIds, int sampleSize) {
+        Map<Integer, Reservoir> reservoirs = new HashMap<>();
+        for (Integer typeId : typeIds) reservoirs.put(typeId, new Reservoir(sampleSize));
+        int[] type = new int[1];
+        RelationshipVisitor<RuntimeException> visitor = (relId, relType, startNode, endNode) -> type[0] = relType;
+        for (PrimitiveLongIterator it = ops.relationshipsGetAll(); it.hasNext(); ) {
+            long id = it.next();
+            try {
+                ops.relationshipVisit(id, visitor);
+            } catch (EntityNotFoundException e) {
+                continue; // deleted concurrently
+            }
+            Reservoir reservoir = reservoirs.get(type[0]);
+            if (reservoir != null) reservoir.add(id);
+        }
+        Map<Integer, long[]> samples = new HashMap<>();
+        reservoirs.forEach((typeId, reservoir) -> samples.put(typeId, reservoir.ids()));
+        return samples;
+    }
+
+    interface IdFilter {
+        boolean accept(long id) throws EntityNotFoundException;
+    }
+
+    /**
+     * @return sampleSize distinct random ids accepted by the filter, or null if they weren't found within the probe budget
+     */
+    static long[] probe(long highId, int sampleSize, IdFilter filter) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Set<Long> seen = new HashSet<>();
+        long[] ids = new long[sampleSize];
+        int count = 0;
+        for (long attempts = (long) sampleSize * PROBE_RATIO * 4; count < sampleSize && attempts > 0; attempts--) {
+            long id = random.nextLong(highId);
+            if (!seen.add(id)) continue;
+            try {
+                if (filter.accept(id)) ids[count++] = id;
+            } catch (EntityNotFoundException e) {
+                // unused id
+            }
+        }
+        if (count < sampleSize) return null;
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Reservoir sample of up to sampleSize ids, all ids if there are fewer.
+     */
+    static long[] reservoir(PrimitiveLongIterator it, int sampleSize) {
+        Reservoir reservoir = new Reservoir(sampleSize);
+        while (it.hasNext()) reservoir.add(it.next());
+        return reservoir.ids();
+    }
+
+    /**
+     * Algorithm R: keeps each of the ids seen so far with the same probability.
+     */
+    static class Reservoir {
+        private final ThreadLocalRandom random = ThreadLocalRandom.current();
+        private final long[] ids;
+        private long seen;
+
+        Reservoir(int sampleSize) {
+            ids = new long[sampleSize];
+        }
+
+        void add(long id) {
+            if (seen < ids.length) {
+                ids[(int) seen] = id;
+            } else {
+                long slot = random.nextLong(seen + 1);
+                if (slot < ids.length) ids[(int) slot] = id;
+            }
+            seen++;
+        }
+
+        /**
+         * @return the sampled ids, sorted
+         */
+        long[] ids() {
+            long[] result = seen < ids.length ? Arrays.copyOf(ids, (int) seen) : ids.clone();
+            Arrays.sort(result);
+            return result;
+        }
+    }
+
+    /**
+     * @return the estimated population count of a feature seen in hits of sampled elements drawn from total
+     */
+    static long estimate(long hits, long sampled, long total) {
+        return sampled == 0 ? 0 : Math.round((double) hits / sampled * total);
+    }
+
+    /**
+     * @return half width of the 95% confidence interval of the estimate, with finite population correction
+     */
+    static long margin(long hits, long sampled, long total) {
+        if (sampled == 0 || total <= 1 || sampled >= total) return 0;
+        double p = (double) hits / sampled;
+        double correction = (double) (total - sampled) / (total - 1);
+        return Math.round(Z95 * Math.sqrt(p * (1 - p) / sampled * correction) * total);
+    }
+}
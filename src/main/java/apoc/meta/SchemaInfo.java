@@ -0,0 +1,57 @@
+package apoc.meta;
+
+import org.neo4j.graphdb.schema.ConstraintDefinition;
+import org.neo4j.graphdb.schema.IndexDefinition;
+import org.neo4j.graphdb.schema.Schema;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Index and constraint flags per (label, property) and (relationship type, property),
+ * read with one pass over all indexes and constraints instead of looking them up per property.
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class SchemaInfo {
+
+    static class Flags {
+        boolean index;
+        boolean unique;
+        boolean existence;
+    }
+
+    static final Flags NONE = new Flags();
+
+    final Map<String, Map<String, Flags>> labels = new TreeMap<>();
+    final Map<String, Map<String, Flags>> types = new TreeMap<>();
+
+    static SchemaInfo of(Schema schema) {
+        SchemaInfo info = new SchemaInfo();
+        for (IndexDefinition index : schema.getIndexes()) {
+            for (String key : index.getPropertyKeys()) {
+                info.flags(info.labels, index.getLabel().name(), key).index = true;
+            }
+        }
+        for (ConstraintDefinition constraint : schema.getConstraints()) {
+            for (String key : constraint.getPropertyKeys()) {
+                switch (constraint.getConstraintType()) {
+                    case UNIQUENESS: info.flags(info.labels, constraint.getLabel().name(), key).unique = true; break;
+                    case NODE_PROPERTY_EXISTENCE: info.flags(info.labels, constraint.getLabel().name(), key).existence = true; break;
+                    case RELATIONSHIP_PROPERTY_EXISTENCE: info.flags(info.types, constraint.getRelationshipType().name(), key).existence = true; break;
+                }
+            }
+        }
+        return info;
+    }
+
+    Map<String, Flags> forLabel(String label) {
+        return labels.getOrDefault(label, Collections.emptyMap());
+    }
+
+    private Flags flags(Map<String, Map<String, Flags>> owners, String owner, String key) {
+        return owners.computeIfAbsent(owner, k -> new TreeMap<>()).computeIfAbsent(key, k -> new Flags());
+    }
+}
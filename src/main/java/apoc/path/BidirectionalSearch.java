@@ -0,0 +1,132 @@
+package apoc.path;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongObjectMap;
+import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+
+/**
+ * Shortest path between two nodes by breadth-first search from both ends, each round expands one full level
+ * of the side with the smaller frontier, the end side follows the relationship filter in reverse direction.
+ * Each side keeps the relationship through which it first reached a node in a primitive long map, the search stops
+ * as soon as a node reached by one side is found by the other, so only the neighbourhoods up to about half the path
+ * length are visited.
+ * Intermediate nodes and both ends have to pass the label filter.
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class BidirectionalSearch {
+
+	private final List<PathExplorer.TypeAndDirection> filter;
+	private final PathExplorer.LabelEvaluator labels;
+	private final long maxDepth;
+
+	/**
+	 * @param maxDepth maximum path length, negative for unlimited
+	 */
+	BidirectionalSearch(List<PathExplorer.TypeAndDirection> filter, PathExplorer.LabelEvaluator labels, long maxDepth) {
+		this.filter = filter;
+		this.labels = labels;
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * @return the shortest path from start to end or null if there is none within the maximum depth
+	 */
+	Path find(Node start, Node end) {
+		if (!labels.accepts(start) || !labels.accepts(end)) return null;
+		if (start.equals(end)) return new PathImpl.Builder(start).build();
+		Side forward = new Side(start, false);
+		Side backward = new Side(end, true);
+		long depth = 0;
+		while ((maxDepth < 0 || depth < maxDepth) && !forward.frontier.isEmpty() && !backward.frontier.isEmpty()) {
+			boolean fromStart = forward.frontier.size() <= backward.frontier.size();
+			Node meet = fromStart ? forward.expand(backward) : backward.expand(forward);
+			if (meet != null) return path(start, forward.trail(meet), backward.trail(meet));
+			depth++;
+		}
+		return null;
+	}
+
+	// head leads from the meeting node back to start, tail from the meeting node to end
+	private static Path path(Node start, List<Relationship> head, List<Relationship> tail) {
+		PathImpl.Builder builder = new PathImpl.Builder(start);
+		for (int i = head.size() - 1; i >= 0; i--) builder = builder.push(head.get(i));
+		for (Relationship rel : tail) builder = builder.push(rel);
+		return builder.build();
+	}
+
+	private class Side {
+		// node id -> relationship it was reached through, except for the origin
+		private final PrimitiveLongObjectMap<Relationship> parents = Primitive.longObjectMap();
+		private final long origin;
+		private final boolean reverse;
+		private List<Node> frontier = new ArrayList<>();
+
+		Side(Node origin, boolean reverse) {
+			this.origin = origin.getId();
+			this.reverse = reverse;
+			frontier.add(origin);
+		}
+
+		boolean reached(long id) {
+			return id == origin || parents.containsKey(id);
+		}
+
+		/**
+		 * Expands the whole frontier by one level.
+		 * @return the first newly reached node the other side has already reached, or null
+		 */
+		Node expand(Side other) {
+			List<Node> next = new ArrayList<>();
+			for (Node node : frontier) {
+				if (filter.isEmpty()) {
+					Node meet = visit(node, node.getRelationships(), other, next);
+					if (meet != null) return meet;
+					continue;
+				}
+				for (PathExplorer.TypeAndDirection def : filter) {
+					Direction direction = reverse ? def.direction.reverse() : def.direction;
+					Iterable<Relationship> rels = def.type == null ? node.getRelationships(direction) : node.getRelationships(direction, new RelationshipType[] {def.type});
+					Node meet = visit(node, rels, other, next);
+					if (meet != null) return meet;
+				}
+			}
+			frontier = next;
+			return null;
+		}
+
+		private Node visit(Node node, Iterable<Relationship> rels, Side other, List<Node> next) {
+			for (Relationship rel : rels) {
+				Node neighbour = rel.getOtherNode(node);
+				long id = neighbour.getId();
+				if (reached(id) || !labels.accepts(neighbour)) continue;
+				parents.put(id, rel);
+				if (other.reached(id)) return neighbour;
+				next.add(neighbour);
+			}
+			return null;
+		}
+
+		/**
+		 * @return the relationships from the node back to this side's origin
+		 */
+		List<Relationship> trail(Node node) {
+			List<Relationship> rels = new ArrayList<>();
+			while (node.getId() != origin) {
+				Relationship rel = parents.get(node.getId());
+				rels.add(rel);
+				node = rel.getOtherNode(node);
+			}
+			return rels;
+		}
+	}
+}
@@ -0,0 +1,219 @@
+package apoc.path;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.traversal.TraversalDescription;
+
+/**
+ * Runs one traversal per start node on a bounded worker pool, the start nodes are split into contiguous shards,
+ * each traversed in its own read transaction.
+ * Ordered mode returns the paths grouped by start node in the order of the start nodes, the paths of a shard are buffered
+ * until it is consumed and at most {@link #THREADS} shards are traversed ahead of the consumer.
+ * Unordered mode hands them over through a bounded queue as soon as they are found, a worker gives up when the consumer
+ * hasn't taken a path for {@link #TIMEOUT} seconds.
+ * Closing the stream stops the workers.
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class ParallelExpansion {
+
+	static final int THREADS = Integer.getInteger("apoc.path.parallel.threads", Runtime.getRuntime().availableProcessors());
+	static final int QUEUE_SIZE = 1024;
+	static final long TIMEOUT = Long.getLong("apoc.path.parallel.timeout", 60);
+
+	private static final ExecutorService POOL = Executors.newFixedThreadPool(THREADS, runnable -> {
+		Thread thread = new Thread(runnable, "apoc-path-expand");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private static final Object DONE = new Object();
+
+	static Stream<Path> expand(GraphDatabaseService db, TraversalDescription td, List<Node> startNodes, boolean ordered) {
+		List<List<Node>> shards = shards(startNodes, THREADS * 4);
+		AtomicBoolean closed = new AtomicBoolean();
+		Iterator<Path> it;
+		Queue<Future<?>> futures = new ConcurrentLinkedQueue<>();
+		if (ordered) {
+			it = new OrderedIterator(shards, shard -> {
+				Future<List<Path>> future = POOL.submit(() -> collect(db, td, shard, closed));
+				futures.add(future);
+				return future;
+			});
+		} else {
+			BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+			AtomicReference<Throwable> error = new AtomicReference<>();
+			for (List<Node> shard : shards) {
+				futures.add(POOL.submit(() -> {
+					try {
+						publish(db, td, shard, queue, closed, error);
+					} catch (Throwable t) {
+						error.compareAndSet(null, t);
+					} finally {
+						put(queue, DONE, closed, error);
+					}
+				}));
+			}
+			it = new QueueIterator(queue, shards.size(), closed, error);
+		}
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(() -> {
+					closed.set(true);
+					// the workers check the closed flag between paths, interrupting them could break their store reads
+					for (Future<?> future : futures) future.cancel(false);
+				});
+	}
+
+	static List<List<Node>> shards(List<Node> nodes, int count) {
+		List<List<Node>> shards = new ArrayList<>();
+		int size = Math.max(1, (nodes.size() + count - 1) / count);
+		for (int from = 0; from < nodes.size(); from += size) {
+			shards.add(nodes.subList(from, Math.min(nodes.size(), from + size)));
+		}
+		return shards;
+	}
+
+	private static List<Path> collect(GraphDatabaseService db, TraversalDescription td, List<Node> shard, AtomicBoolean closed) {
+		List<Path> paths = new ArrayList<>();
+		try (Transaction tx = db.beginTx()) {
+			for (Node node : shard) {
+				for (Path path : td.traverse(node)) {
+					if (closed.get()) return paths;
+					paths.add(path);
+				}
+			}
+			tx.success();
+		}
+		return paths;
+	}
+
+	private static void publish(GraphDatabaseService db, TraversalDescription td, List<Node> shard, BlockingQueue<Object> queue, AtomicBoolean closed, AtomicReference<Throwable> error) {
+		try (Transaction tx = db.beginTx()) {
+			for (Node node : shard) {
+				for (Path path : td.traverse(node)) {
+					if (!put(queue, path, closed, error)) return;
+				}
+			}
+			tx.success();
+		}
+	}
+
+	// waits for space in the queue until the stream is closed or the consumer hasn't taken anything for TIMEOUT seconds
+	private static boolean put(BlockingQueue<Object> queue, Object value, AtomicBoolean closed, AtomicReference<Throwable> error) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+		try {
+			while (!closed.get()) {
+				if (queue.offer(value, 100, TimeUnit.MILLISECONDS)) return true;
+				if (System.nanoTime() - deadline > 0) {
+					error.compareAndSet(null, new TimeoutException("No path was consumed for " + TIMEOUT + " seconds"));
+					closed.set(true);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return false;
+	}
+
+	private static class OrderedIterator implements Iterator<Path> {
+		private final Iterator<List<Node>> shards;
+		private final Function<List<Node>, Future<List<Path>>> submit;
+		private final Queue<Future<List<Path>>> running = new ArrayDeque<>();
+		private Iterator<Path> current = Collections.emptyIterator();
+
+		OrderedIterator(List<List<Node>> shards, Function<List<Node>, Future<List<Path>>> submit) {
+			this.shards = shards.iterator();
+			this.submit = submit;
+			while (running.size() < THREADS && this.shards.hasNext()) {
+				running.add(submit.apply(this.shards.next()));
+			}
+		}
+
+		public boolean hasNext() {
+			while (!current.hasNext() && !running.isEmpty()) {
+				Future<List<Path>> next = running.poll();
+				// keep THREADS shards in flight, buffering only their paths
+				if (shards.hasNext()) running.add(submit.apply(shards.next()));
+				current = await(next).iterator();
+			}
+			return current.hasNext();
+		}
+
+		public Path next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			return current.next();
+		}
+
+		private static List<Path> await(Future<List<Path>> future) {
+			try {
+				return future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while expanding paths", e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException("Error expanding paths", e.getCause());
+			}
+		}
+	}
+
+	private static class QueueIterator implements Iterator<Path> {
+		private final BlockingQueue<Object> queue;
+		private final AtomicBoolean closed;
+		private final AtomicReference<Throwable> error;
+		private int running;
+		private Path next;
+
+		QueueIterator(BlockingQueue<Object> queue, int workers, AtomicBoolean closed, AtomicReference<Throwable> error) {
+			this.queue = queue;
+			this.running = workers;
+			this.closed = closed;
+			this.error = error;
+		}
+
+		public boolean hasNext() {
+			try {
+				while (next == null && running > 0) {
+					Object value = queue.poll(100, TimeUnit.MILLISECONDS);
+					if (value == null) {
+						// stopped workers don't hand over their DONE marker
+						if (closed.get()) break;
+					} else if (value == DONE) running--;
+					else next = (Path) value;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while expanding paths", e);
+			}
+			if (next == null && error.get() != null) {
+				throw new RuntimeException("Error expanding paths", error.get());
+			}
+			return next != null;
+		}
+
+		public Path next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			Path path = next;
+			next = null;
+			return path;
+		}
+	}
+}
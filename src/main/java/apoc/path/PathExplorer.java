@@ -2,9 +2,9 @@ package apoc.path;
 
 import java.util.*;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.neo4j.graphdb.Direction;
-import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
@@ -16,19 +16,29 @@ import org.neo4j.graphdb.traversal.Evaluator;
 import org.neo4j.graphdb.traversal.Evaluators;
 import org.neo4j.graphdb.traversal.TraversalDescription;
 import org.neo4j.graphdb.traversal.Uniqueness;
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveIntIterator;
+import org.neo4j.collection.primitive.PrimitiveLongSet;
+import org.neo4j.kernel.api.ReadOperations;
+import org.neo4j.kernel.api.Statement;
+import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
 import apoc.Description;
+import apoc.result.LongResult;
+import apoc.result.NodeResult;
 
 
 public class PathExplorer {
 	private static final String VERSION = "0.5";
 	public static final Uniqueness UNIQUENESS = Uniqueness.RELATIONSHIP_PATH;
 	@Context
-    public GraphDatabaseService db;
+    public GraphDatabaseAPI db;
 
 	@Context
     public Log log;
@@ -49,6 +59,99 @@ public class PathExplorer {
 		return explorePathPrivate(nodes, pathFilter, labelFilter, minLevel, maxLevel);
 	}
 
+	@Procedure("apoc.path.expandParallel")
+	@Description("apoc.path.expandParallel(startNode <id>|Node|list, 'TYPE|TYPE_OUT>|<TYPE_IN', '+YesLabel|-NoLabel', minLevel, maxLevel, ordered) yield path like apoc.path.expand, expands from the start nodes concurrently, ordered returns the paths grouped in start node order")
+	public Stream<PathContainer> explorePathParallel(@Name("start") Object start
+			                   ,@Name("relationshipFilter") String pathFilter
+			                   ,@Name("labelFilter") String labelFilter
+			                   ,@Name("minLevel") long minLevel
+			                   ,@Name("maxLevel") long maxLevel
+			                   ,@Name("ordered") boolean ordered ) throws Exception {
+		List<Node> nodes = startToNodes(start);
+		TraversalDescription td = traversal(pathFilter, labelFilter, minLevel, maxLevel);
+		return ParallelExpansion.expand(db, td, nodes, ordered).map( PathContainer::new );
+	}
+
+	@Procedure("apoc.path.subgraphNodes")
+	@Description("apoc.path.subgraphNodes(startNode <id>|Node|list, 'TYPE|TYPE_OUT>|<TYPE_IN', '+YesLabel|-NoLabel', maxLevel) yield node - distinct nodes reachable from the start nodes within maxLevel hops (-1 for unlimited) in breadth-first order, without building paths")
+	public Stream<NodeResult> subgraphNodes(@Name("start") Object start
+			                   ,@Name("relationshipFilter") String pathFilter
+			                   ,@Name("labelFilter") String labelFilter
+			                   ,@Name("maxLevel") long maxLevel ) throws Exception {
+		return subgraph(start, pathFilter, labelFilter, maxLevel).map( NodeResult::new );
+	}
+
+	@Procedure("apoc.path.reachable")
+	@Description("apoc.path.reachable(startNode <id>|Node|list, 'TYPE|TYPE_OUT>|<TYPE_IN', '+YesLabel|-NoLabel', maxLevel) yield value - ids of the distinct nodes reachable from the start nodes within maxLevel hops (-1 for unlimited)")
+	public Stream<LongResult> reachable(@Name("start") Object start
+			                   ,@Name("relationshipFilter") String pathFilter
+			                   ,@Name("labelFilter") String labelFilter
+			                   ,@Name("maxLevel") long maxLevel ) throws Exception {
+		return subgraph(start, pathFilter, labelFilter, maxLevel).map( node -> new LongResult(node.getId()) );
+	}
+
+	private Stream<Node> subgraph(Object start, String pathFilter, String labelFilter, long maxLevel) throws Exception {
+		Iterator<Node> it = new SubgraphIterator(startToNodes(start), relationshipFilter(pathFilter), labelEvaluator(labelFilter), maxLevel);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+	}
+
+	@Procedure("apoc.path.shortest")
+	@Description("apoc.path.shortest(startNode <id>|Node, endNode <id>|Node, 'TYPE|TYPE_OUT>|<TYPE_IN', '+YesLabel|-NoLabel', maxDepth) yield path - a shortest path between the two nodes within maxDepth hops (-1 for unlimited), found by a bidirectional breadth-first search")
+	public Stream<PathContainer> shortest(@Name("start") Object start
+			                   ,@Name("end") Object end
+			                   ,@Name("relationshipFilter") String pathFilter
+			                   ,@Name("labelFilter") String labelFilter
+			                   ,@Name("maxDepth") long maxDepth ) throws Exception {
+		if (start == null || end == null) return Stream.empty(); // e.g. from an OPTIONAL MATCH
+		Node startNode = singleNode(start, "start"), endNode = singleNode(end, "end");
+		Path path = new BidirectionalSearch(relationshipFilter(pathFilter), labelEvaluator(labelFilter), maxDepth).find(startNode, endNode);
+		return path == null ? Stream.empty() : Stream.of(new PathContainer(path));
+	}
+
+	private Node singleNode(Object value, String name) throws Exception {
+		if (value instanceof List) throw new IllegalArgumentException("A single " + name + " node is required, not a list");
+		return startToNodes(value).get(0);
+	}
+
+	@Procedure("apoc.path.expandConfig")
+	@Description("apoc.path.expandConfig(startNode <id>|Node|list, {relationshipFilter:'TYPE|TYPE_OUT>|<TYPE_IN', labelFilter:'+YesLabel|-NoLabel', minLevel:0, maxLevel:-1, uniqueness:'RELATIONSHIP_PATH', order:'BFS', limit:-1, endNodes:[]}) yield path - like apoc.path.expand with configurable uniqueness (NODE_GLOBAL, NODE_PATH, RELATIONSHIP_GLOBAL, RELATIONSHIP_PATH, NONE), breadth or depth first order, a limit and end nodes at which paths stop")
+	public Stream<PathContainer> expandConfig(@Name("start") Object start, @Name("config") Map<String,Object> config) throws Exception {
+		if (config == null) config = Collections.emptyMap();
+		List<Node> nodes = startToNodes(start);
+		Uniqueness uniqueness = uniqueness((String) config.getOrDefault("uniqueness", UNIQUENESS.name()));
+		Object order = config.containsKey("order") ? config.get("order") : config.getOrDefault("bfs", true);
+		boolean bfs = order instanceof Boolean ? (Boolean) order : !"DFS".equalsIgnoreCase(order.toString());
+		long maxLevel = longValue(config, "maxLevel", -1);
+		if (maxLevel < 0) maxLevel = Integer.MAX_VALUE; // unlimited
+		TraversalDescription td = traversal((String) config.get("relationshipFilter"), (String) config.get("labelFilter"),
+				longValue(config, "minLevel", 0), maxLevel, uniqueness, bfs);
+		long limit = longValue(config, "limit", -1);
+		Object endNodes = config.get("endNodes");
+		if (endNodes != null) {
+			List<Node> ends = startToNodes(endNodes);
+			PrimitiveLongSet endIds = Primitive.longSet(ends.size());
+			for (Node end : ends) endIds.add(end.getId());
+			// paths stop at the end nodes, with node global uniqueness each end node is reached at most once
+			td = td.evaluator(path -> endIds.contains(path.endNode().getId()) ? Evaluation.INCLUDE_AND_PRUNE : Evaluation.EXCLUDE_AND_CONTINUE);
+			if (uniqueness == Uniqueness.NODE_GLOBAL && (limit < 0 || limit > endIds.size())) limit = endIds.size();
+		}
+		Stream<PathContainer> paths = td.traverse(nodes).stream().map( PathContainer::new );
+		return limit < 0 ? paths : paths.limit(limit);
+	}
+
+	private static Uniqueness uniqueness(String name) {
+		try {
+			return Uniqueness.valueOf(name.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unsupported uniqueness " + name + ", supported are " + Arrays.toString(Uniqueness.values()));
+		}
+	}
+
+	private static long longValue(Map<String,Object> config, String key, long defaultValue) {
+		Object value = config.get(key);
+		return value == null ? defaultValue : ((Number) value).longValue();
+	}
+
 	@SuppressWarnings("unchecked")
 	private List<Node> startToNodes(Object start) throws Exception {
 		if (start == null) return Collections.emptyList();
@@ -84,37 +187,76 @@ public class PathExplorer {
 			                   ,String labelFilter
 			                   ,long minLevel
 			                   ,long maxLevel ) {
+		TraversalDescription td = traversal(pathFilter, labelFilter, minLevel, maxLevel);
+		return td.traverse(startNodes).stream().map( PathContainer::new );
+	}
+
+	private TraversalDescription traversal(String pathFilter
+			                   ,String labelFilter
+			                   ,long minLevel
+			                   ,long maxLevel ) {
+		return traversal(pathFilter, labelFilter, minLevel, maxLevel, UNIQUENESS, true); // this is how Cypher works !!
+	}
+
+	private TraversalDescription traversal(String pathFilter
+			                   ,String labelFilter
+			                   ,long minLevel
+			                   ,long maxLevel
+			                   ,Uniqueness uniqueness
+			                   ,boolean bfs ) {
 		// LabelFilter
 		// -|Label|:Label|:Label excluded label list
 		// +:Label or :Label include labels
 		
 		int from = new Long(minLevel).intValue();
-		int to = new Long(maxLevel).intValue();
-		TraversalDescription td = db.traversalDescription().breadthFirst();
+		TraversalDescription td = db.traversalDescription();
+		td = bfs ? td.breadthFirst() : td.depthFirst();
 		// based on the pathFilter definition now the possible relationships and directions must be shown
-		if (pathFilter !=null ) {
-			String[] defs = pathFilter.split("\\|");
-			if (!defs[0].isEmpty()) {
-				for (String def : defs) {
-					Direction direction = directionFor(def);
-					RelationshipType relType = new DynRelationshipType(def);
-					if (relType.name().isEmpty()) {
-						td = td.expand(PathExpanderBuilder.allTypes(direction).build());
-					} else {
-						td = td.relationships(relType, direction);
-					}
-				}
-			} // else td = td.expand(StandardExpander.DEFAULT); }
-		} // else { td = td.expand(StandardExpander.DEFAULT); }
-		LabelEvaluator labelEvaluator = new LabelEvaluator(labelFilter);
+		for (TypeAndDirection def : relationshipFilter(pathFilter)) {
+			if (def.type == null) {
+				td = td.expand(PathExpanderBuilder.allTypes(def.direction).build());
+			} else {
+				td = td.relationships(def.type, def.direction);
+			}
+		} // empty filter: td.expand(StandardExpander.DEFAULT)
+		LabelEvaluator labelEvaluator = labelEvaluator(labelFilter);
 		td = td.evaluator(Evaluators.fromDepth(from))
-				.evaluator(Evaluators.toDepth(to))
+				.evaluator(Evaluators.toDepth(new Long(maxLevel).intValue()))
 				.evaluator(labelEvaluator);
-		td = td.uniqueness(UNIQUENESS); // this is how Cypher works !!
+		td = td.uniqueness(uniqueness);
 		// uniqueness should be set as last on the TraversalDescription
-		return td.traverse(startNodes).stream().map( PathContainer::new );
+		return td;
 	}
 	
+	LabelEvaluator labelEvaluator(String labelFilter) {
+		return new LabelEvaluator(labelFilter, db.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class));
+	}
+
+	/**
+	 * Parses 'TYPE|TYPE_OUT>|<TYPE_IN', an empty list means all types in both directions.
+	 */
+	List<TypeAndDirection> relationshipFilter(String pathFilter) {
+		List<TypeAndDirection> result = new ArrayList<>();
+		if (pathFilter == null) return result;
+		String[] defs = pathFilter.split("\\|");
+		if (defs[0].isEmpty()) return result;
+		for (String def : defs) {
+			RelationshipType relType = new DynRelationshipType(def);
+			result.add(new TypeAndDirection(relType.name().isEmpty() ? null : relType, directionFor(def)));
+		}
+		return result;
+	}
+
+	static class TypeAndDirection {
+		final RelationshipType type; // null for all types
+		final Direction direction;
+
+		TypeAndDirection(RelationshipType type, Direction direction) {
+			this.type = type;
+			this.direction = direction;
+		}
+	}
+
 	public class DynRelationshipType implements RelationshipType {
 		private String name;
 		public DynRelationshipType(String sname) {
@@ -169,6 +311,30 @@ public class PathExplorer {
 	public static class LabelEvaluator implements Evaluator {
 		private boolean included = true;
 		private Set<String> labels = new HashSet<String>();
+		// filter labels by token id, when resolved through the kernel
+		private ThreadToStatementContextBridge bridge;
+		private boolean[] labelIds;
+		private boolean anyLabelId;
+
+		public LabelEvaluator(String labelFilter, ThreadToStatementContextBridge bridge) {
+			this(labelFilter);
+			this.bridge = bridge;
+			try (Statement statement = bridge.get()) {
+				ReadOperations ops = statement.readOperations();
+				List<Integer> ids = new ArrayList<>();
+				int max = -1;
+				for (String label : labels) {
+					int id = ops.labelGetForName(label);
+					if (id == ReadOperations.NO_SUCH_LABEL) continue;
+					ids.add(id);
+					max = Math.max(max, id);
+				}
+				labelIds = new boolean[max + 1];
+				for (int id : ids) labelIds[id] = true;
+				anyLabelId = !ids.isEmpty();
+			}
+		}
+
 		public LabelEvaluator(String labelFilter) {
 			// parse the filter
 			if (labelFilter ==  null || labelFilter.equalsIgnoreCase("")) labelFilter = "-"; // exclude nothing
@@ -185,22 +351,14 @@ public class PathExplorer {
 		
 		@Override
 		public Evaluation evaluate(Path path) {
-			Node check = path.endNode();
-			if (included) {
-				if (labelExists(check)) {
-					return Evaluation.INCLUDE_AND_CONTINUE;
-				} else {
-					return Evaluation.EXCLUDE_AND_PRUNE;
-				}
-			} else {
-				if (labelExists(check)) {
-					return Evaluation.EXCLUDE_AND_PRUNE;
-				} else {
-					return Evaluation.INCLUDE_AND_CONTINUE;
-				}
-			}
+			return accepts(path.endNode()) ? Evaluation.INCLUDE_AND_CONTINUE : Evaluation.EXCLUDE_AND_PRUNE;
+		}
+
+		boolean accepts(Node node) {
+			return included == labelExists(node);
 		}
 		private boolean labelExists(Node node) {
+			if (bridge != null) return labelIdExists(node);
 			for ( Label lab : node.getLabels() ) {
 				if (labels.contains(lab.name())) {
 					return true;
@@ -208,6 +366,23 @@ public class PathExplorer {
 			}
 			return false;
 		}
+		// checks the node's label ids without creating Label objects or names, filter labels that don't exist can't match
+		private boolean labelIdExists(Node node) {
+			if (!anyLabelId) return false;
+			// acquired per check from the transaction bound to the calling thread, also for parallel workers
+			try (Statement statement = bridge.get()) {
+				PrimitiveIntIterator it = statement.readOperations().nodeGetLabels(node.getId());
+				while (it.hasNext()) {
+					int id = it.next();
+					if (id < labelIds.length && labelIds[id]) {
+						return true;
+					}
+				}
+				return false;
+			} catch (EntityNotFoundException e) {
+				return false;
+			}
+		}
 	}
 
 }
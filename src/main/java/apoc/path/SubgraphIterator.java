@@ -0,0 +1,79 @@
+package apoc.path;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongSet;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+
+/**
+ * Breadth-first iteration over the distinct nodes reachable from the start nodes (node global uniqueness),
+ * following the relationship filter and pruning at nodes rejected by the label filter.
+ * Nodes are returned in the order they were reached, no paths are built, visited node ids are kept in a primitive long set.
+ *
+ * @author mh
+ * @since 17.10.26
+ */
+class SubgraphIterator implements Iterator<Node> {
+
+	private final List<PathExplorer.TypeAndDirection> filter;
+	private final PathExplorer.LabelEvaluator labels;
+	private final long maxLevel;
+	private final PrimitiveLongSet visited = Primitive.longSet();
+	private final ArrayDeque<Node> queue = new ArrayDeque<>();
+	private long level;
+	private int remainingInLevel;
+
+	/**
+	 * @param maxLevel maximum depth, negative for unlimited
+	 */
+	SubgraphIterator(List<Node> startNodes, List<PathExplorer.TypeAndDirection> filter, PathExplorer.LabelEvaluator labels, long maxLevel) {
+		this.filter = filter;
+		this.labels = labels;
+		this.maxLevel = maxLevel;
+		for (Node node : startNodes) {
+			if (labels.accepts(node) && visited.add(node.getId())) queue.add(node);
+		}
+		remainingInLevel = queue.size();
+	}
+
+	public boolean hasNext() {
+		return !queue.isEmpty();
+	}
+
+	public Node next() {
+		if (queue.isEmpty()) throw new NoSuchElementException();
+		Node node = queue.poll();
+		if (maxLevel < 0 || level < maxLevel) expand(node);
+		if (--remainingInLevel == 0) {
+			level++;
+			remainingInLevel = queue.size();
+		}
+		return node;
+	}
+
+	private void expand(Node node) {
+		if (filter.isEmpty()) {
+			visit(node, node.getRelationships());
+			return;
+		}
+		for (PathExplorer.TypeAndDirection def : filter) {
+			visit(node, def.type == null ? node.getRelationships(def.direction) : node.getRelationships(def.direction, new RelationshipType[] {def.type}));
+		}
+	}
+
+	private void visit(Node node, Iterable<Relationship> rels) {
+		for (Relationship rel : rels) {
+			Node other = rel.getOtherNode(node);
+			if (!visited.contains(other.getId()) && labels.accepts(other)) {
+				visited.add(other.getId());
+				queue.add(other);
+			}
+		}
+	}
+}
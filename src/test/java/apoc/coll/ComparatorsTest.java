@@ -0,0 +1,71 @@
+package apoc.coll;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author mh
+ * @since 17.10.26
+ */
+public class ComparatorsTest {
+
+    @Test
+    public void testSpecializedOrderMatchesGeneric() {
+        for (Map.Entry<String, List<Object>> input : inputs(10_000).entrySet()) {
+            List<Object> specialized = new ArrayList<>(input.getValue());
+            List<Object> generic = new ArrayList<>(input.getValue());
+            specialized.sort(Comparators.forList(specialized));
+            generic.sort(Coll::compare);
+            assertEquals(input.getKey(), generic, specialized);
+        }
+    }
+
+    @Ignore("manual benchmark, sorts 1M elements per input with both comparators")
+    @Test
+    public void benchmarkSort() {
+        int warmup = 3, rounds = 5;
+        for (Map.Entry<String, List<Object>> input : inputs(1_000_000).entrySet()) {
+            List<Object> list = input.getValue();
+            Comparator<Object> specialized = Comparators.forList(list);
+            Comparator<Object> generic = Coll::compare;
+            long specializedNanos = Long.MAX_VALUE, genericNanos = Long.MAX_VALUE;
+            for (int i = 0; i < warmup + rounds; i++) {
+                long s = time(list, specialized), g = time(list, generic);
+                if (i < warmup) continue;
+                specializedNanos = Math.min(specializedNanos, s);
+                genericNanos = Math.min(genericNanos, g);
+            }
+            System.out.printf("%-8s Comparators.forList %6d ms  Coll::compare %6d ms  speedup %.2fx%n", input.getKey(),
+                    specializedNanos / 1_000_000, genericNanos / 1_000_000, (double) genericNanos / specializedNanos);
+        }
+    }
+
+    private static long time(List<Object> list, Comparator<Object> comparator) {
+        Object[] values = list.toArray();
+        long start = System.nanoTime();
+        Arrays.sort(values, comparator);
+        return System.nanoTime() - start;
+    }
+
+    // longs, their strings and longs with a double every 100 elements, past the profiled prefix
+    private static Map<String, List<Object>> inputs(int elements) {
+        Random random = new Random(42);
+        List<Object> longs = new ArrayList<>(elements), strings = new ArrayList<>(elements), mixed = new ArrayList<>(elements);
+        for (int i = 0; i < elements; i++) {
+            // exact as doubles, so that mixed numbers have a consistent order
+            long value = random.nextInt();
+            longs.add(value);
+            strings.add(String.valueOf(value));
+            mixed.add(i >= Comparators.PROFILE && i % 100 == 0 ? (Object) (value + 0.5) : (Object) value);
+        }
+        Map<String, List<Object>> inputs = new LinkedHashMap<>();
+        inputs.put("longs", longs);
+        inputs.put("strings", strings);
+        inputs.put("mixed", mixed);
+        return inputs;
+    }
+}
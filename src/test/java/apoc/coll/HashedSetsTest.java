@@ -0,0 +1,48 @@
+package apoc.coll;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author mh
+ * @since 17.10.26
+ */
+public class HashedSetsTest {
+
+    private long maxElements;
+
+    @Before
+    public void setUp() {
+        maxElements = HashedSets.maxElements;
+        HashedSets.maxElements = HashedSets.elements() + 5;
+    }
+
+    @After
+    public void tearDown() {
+        HashedSets.maxElements = maxElements;
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedByElementCount() throws Exception {
+        long a = HashedSets.create(Arrays.asList(1, 2));
+        long b = HashedSets.create(Arrays.asList(3, 4));
+        assertNotEquals(a, b);
+        HashedSets.get(a); // a is now more recently used than b
+        long c = HashedSets.create(Arrays.asList(5, 6));
+        assertTrue(HashedSets.get(a).contains(1));
+        assertTrue(HashedSets.get(c).contains(6));
+        assertFalse(HashedSets.remove(b));
+        assertTrue(HashedSets.remove(a));
+        assertTrue(HashedSets.remove(c));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testSetLargerThanLimit() throws Exception {
+        HashedSets.create(Arrays.asList(1, 2, 3, 4, 5, 6));
+    }
+}
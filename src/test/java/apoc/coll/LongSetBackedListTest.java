@@ -0,0 +1,65 @@
+package apoc.coll;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+/**
+ * @author mh
+ * @since 17.10.26
+ */
+public class LongSetBackedListTest {
+
+    @Test
+    public void testEmptyList() throws Exception {
+        LongSetBackedList list = new LongSetBackedList(new long[0]);
+        assertEquals(0,list.size());
+        assertEquals(true,list.isEmpty());
+        assertEquals(false,list.contains(1L));
+        assertEquals(false,list.iterator().hasNext());
+    }
+
+    @Test
+    public void testDeduplicatesInInsertionOrder() throws Exception {
+        LongSetBackedList list = new LongSetBackedList(new long[] {3,1,3,2,1,Long.MIN_VALUE,0});
+        assertEquals(asList(3L,1L,2L,Long.MIN_VALUE,0L),list);
+        assertEquals(5,list.size());
+        assertEquals(Long.valueOf(2L),list.get(2));
+        assertEquals(3,list.indexOf(Long.MIN_VALUE));
+        assertEquals(-1,list.indexOf(42L));
+    }
+
+    @Test
+    public void testContains() throws Exception {
+        LongSetBackedList list = new LongSetBackedList(new long[] {1,2,3,4,5});
+        assertEquals(true, list.contains(1L));
+        assertEquals(true, list.contains(3L));
+        assertEquals(false, list.contains(7L));
+        assertEquals(false, list.contains("1"));
+        assertEquals(false, list.containsAll(asList(1L,2L,8L)));
+        assertEquals(true, list.containsAll(asList(1L,2L,5L)));
+    }
+
+    @Test
+    public void testLargeList() throws Exception {
+        int elements = 100_000;
+        long[] values = new long[elements * 2];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (i % elements) * 31L;
+        }
+        LongSetBackedList list = new LongSetBackedList(values);
+        assertEquals(elements,list.size());
+        for (int i = 0; i < elements; i++) {
+            assertEquals(i * 31L, (long) list.get(i));
+            assertEquals(i, list.indexOf(i * 31L));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() throws Exception {
+        new LongSetBackedList(new long[] {1}).get(1);
+    }
+}
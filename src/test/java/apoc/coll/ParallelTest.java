@@ -0,0 +1,54 @@
+package apoc.coll;
+
+import apoc.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import static apoc.util.TestUtil.testResult;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author mh
+ * @since 17.10.26
+ */
+public class ParallelTest {
+
+    private GraphDatabaseService db;
+    private int threshold;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue("needs more than one thread", Parallel.THREADS > 1);
+        db = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        TestUtil.registerProcedure(db, Coll.class);
+        threshold = Parallel.threshold;
+        Parallel.threshold = 10;
+    }
+
+    @After
+    public void tearDown() {
+        if (db == null) return;
+        Parallel.threshold = threshold;
+        db.shutdown();
+    }
+
+    @Test
+    public void testContainsParallel() throws Exception {
+        assertEquals(true, Parallel.isParallel(1000));
+        testResult(db, "CALL apoc.coll.contains(range(1,1000),500)", (res) -> assertEquals(true, res.hasNext()));
+        testResult(db, "CALL apoc.coll.contains(range(1,1000),1001)", (res) -> assertEquals(false, res.hasNext()));
+        testResult(db, "CALL apoc.coll.contains(range(1,1000) + [null],null)", (res) -> assertEquals(true, res.hasNext()));
+    }
+
+    @Test
+    public void testContainsAllParallel() throws Exception {
+        testResult(db, "CALL apoc.coll.containsAll(range(1,1000),[1,500,1000])", (res) -> assertEquals(true, res.hasNext()));
+        testResult(db, "CALL apoc.coll.containsAll(range(1,1000),[1,1,2])", (res) -> assertEquals(true, res.hasNext()));
+        testResult(db, "CALL apoc.coll.containsAll(range(1,1000),[1,1001])", (res) -> assertEquals(false, res.hasNext()));
+        testResult(db, "CALL apoc.coll.containsAll(range(1,1000),[])", (res) -> assertEquals(true, res.hasNext()));
+    }
+}
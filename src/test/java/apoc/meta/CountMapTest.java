@@ -0,0 +1,52 @@
+package apoc.meta;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author mh
+ * @since 17.10.26
+ */
+public class CountMapTest {
+
+    @Test
+    public void testKeyPacking() throws Exception {
+        long key = CountMap.key(3, 7, (1 << CountMap.TOKEN_BITS) - 1);
+        assertEquals(3, CountMap.labelA(key));
+        assertEquals(7, CountMap.type(key));
+        assertEquals((1 << CountMap.TOKEN_BITS) - 1, CountMap.labelB(key));
+        assertNotEquals(CountMap.key(1, 2, 3), CountMap.key(3, 2, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTokenTooLarge() throws Exception {
+        CountMap.key(1 << CountMap.TOKEN_BITS, 0, 0);
+    }
+
+    @Test
+    public void testAddGrowAndMerge() throws Exception {
+        CountMap counts = new CountMap(2);
+        for (int i = 0; i < 10_000; i++) {
+            counts.add(i % 1000, 1);
+        }
+        assertEquals(1000, counts.size());
+        assertEquals(10, counts.get(42));
+        assertEquals(0, counts.get(1000));
+
+        CountMap other = new CountMap();
+        other.add(42, 5);
+        other.add(5000, 1);
+        counts.addAll(other);
+        assertEquals(1001, counts.size());
+        assertEquals(15, counts.get(42));
+
+        Map<Long, Long> seen = new HashMap<>();
+        counts.forEach(seen::put);
+        assertEquals(1001, seen.size());
+        assertEquals(Long.valueOf(1), seen.get(5000L));
+    }
+}
@@ -0,0 +1,78 @@
+package apoc.meta;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.api.Statement;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.impl.store.id.IdType;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author mh
+ * @since 17.10.26
+ */
+public class GraphCountsTest {
+
+    private GraphDatabaseAPI db;
+    private long partitionSize;
+
+    @Before
+    public void setUp() throws Exception {
+        db = (GraphDatabaseAPI) new TestGraphDatabaseFactory().newImpermanentDatabase();
+        partitionSize = GraphCounts.partitionSize;
+        GraphCounts.partitionSize = 10;
+    }
+
+    @After
+    public void tearDown() {
+        GraphCounts.partitionSize = partitionSize;
+        db.shutdown();
+    }
+
+    @Test
+    public void testParallelScanMatchesSequentialScan() throws Exception {
+        db.execute("UNWIND range(1,100) AS id CREATE (a:Person {id:id})-[:KNOWS]->(b:Person:Actor), (a)-[:ACTED_IN]->(:Movie)").close();
+        // leave unused ids in the scanned range
+        db.execute("MATCH (:Person)-[r:KNOWS]->() WITH r LIMIT 30 DELETE r").close();
+        try (Transaction tx = db.beginTx();
+             Statement statement = db.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class).get()) {
+            GraphCounts sequential = GraphCounts.scan(statement.readOperations());
+            GraphCounts parallel = GraphCounts.scanParallel(db, Sampling.highId(db, IdType.RELATIONSHIP));
+            assertEquals(toMap(sequential.labels), toMap(parallel.labels));
+            assertEquals(toMap(sequential.rels), toMap(parallel.rels));
+            assertEquals(240L, toMap(parallel.rels).values().stream().mapToLong(Long::longValue).sum());
+            tx.success();
+        }
+    }
+
+    @Test
+    public void testCountIgnoresUncommittedChanges() throws Exception {
+        db.execute("UNWIND range(1,50) AS id CREATE (:Person {id:id})-[:KNOWS]->(:Person)").close();
+        // a single partition and several partitions have to see the same, committed data
+        for (long size : new long[] {1_000_000, 10}) {
+            GraphCounts.partitionSize = size;
+            try (Transaction tx = db.beginTx()) {
+                db.execute("MATCH (a:Person)-[:KNOWS]->(b) CREATE (b)-[:KNOWS]->(a)").close();
+                db.execute("MATCH (a:Person) CREATE (a)-[:ACTED_IN]->(:Movie)").close();
+                Map<Long, Long> rels = toMap(GraphCounts.count(db).rels);
+                assertEquals(1, rels.size());
+                assertEquals(50L, (long) rels.values().iterator().next());
+                tx.failure();
+            }
+        }
+    }
+
+    private static Map<Long, Long> toMap(CountMap counts) {
+        Map<Long, Long> map = new HashMap<>();
+        counts.forEach(map::put);
+        return map;
+    }
+}
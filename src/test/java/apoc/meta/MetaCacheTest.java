@@ -0,0 +1,85 @@
+package apoc.meta;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author mh
+ * @since 17.10.26
+ */
+public class MetaCacheTest {
+
+    private GraphDatabaseAPI db;
+    private MetaCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        db = (GraphDatabaseAPI) new TestGraphDatabaseFactory().newImpermanentDatabase();
+        cache = MetaCache.of(db).incremental(true);
+        db.execute("UNWIND range(1,10) AS id CREATE (:A)-[:R]->(:B)").close();
+    }
+
+    @After
+    public void tearDown() {
+        cache.incremental(false);
+        db.shutdown();
+    }
+
+    @Test
+    public void testCreatedAndDeletedRelationships() throws Exception {
+        assertEquals(10L, total(cache.graph(true, () -> GraphCounts.count(db))));
+        db.execute("UNWIND range(1,5) AS id CREATE (:A)-[:R]->(:B)").close();
+        // the created relationships were added to the snapshot, nothing is scanned
+        assertEquals(15L, total(cache.graph(true, MetaCacheTest::noScan)));
+        db.execute("MATCH ()-[r:R]->() WITH r LIMIT 3 DELETE r").close();
+        AtomicInteger scans = new AtomicInteger();
+        assertEquals(12L, total(cache.graph(true, () -> {
+            scans.incrementAndGet();
+            return GraphCounts.count(db);
+        })));
+        assertEquals(1, scans.get());
+        assertEquals(12L, total(cache.graph(true, MetaCacheTest::noScan)));
+    }
+
+    @Test
+    public void testSnapshotWithinWritingTransaction() throws Exception {
+        try (Transaction tx = db.beginTx()) {
+            db.execute("CREATE (:A)-[:R]->(:B)").close();
+            assertEquals(10L, total(cache.graph(false, () -> GraphCounts.count(db))));
+            tx.success();
+        }
+        // the relationship is only counted once, by the delta of its commit
+        assertEquals(11L, total(cache.graph(true, MetaCacheTest::noScan)));
+    }
+
+    @Test
+    public void testCommitDuringComputation() throws Exception {
+        AtomicInteger scans = new AtomicInteger();
+        GraphCounts counts = cache.graph(false, () -> {
+            if (scans.incrementAndGet() == 1) db.execute("CREATE (:A)-[:R]->(:B)").close();
+            return GraphCounts.count(db);
+        });
+        assertEquals(2, scans.get());
+        assertEquals(11L, total(counts));
+        db.execute("CREATE (:A)-[:R]->(:B)").close();
+        assertEquals(12L, total(cache.graph(true, MetaCacheTest::noScan)));
+    }
+
+    private static GraphCounts noScan() {
+        throw new AssertionError("the cached meta-graph should be used");
+    }
+
+    private static long total(GraphCounts counts) {
+        long[] total = new long[1];
+        counts.rels.forEach((key, count) -> total[0] += count);
+        return total[0];
+    }
+}
@@ -9,6 +9,11 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Scanner;
 
 import org.junit.*;
@@ -61,6 +66,123 @@ public class ExpandPathTest {
 		String query = "MATCH (m:Movie {title: 'The Matrix'}) CALL apoc.path.expand(m,null,'-BigBrother',0,2) yield path return count(*) as c";
 		TestUtil.testCall(db, query, (row) -> assertEquals(44L,row.get("c")));
 	}
+	@Test
+	public void testExplorePathParallelTest() throws Throwable {
+		long[] expected = new long[1];
+		String expand = "MATCH (p:Person) WITH collect(p) as people CALL apoc.path.expand(people,'ACTED_IN>|DIRECTED>','-',1,2) yield path return count(*) as c";
+		TestUtil.testCall(db, expand, (row) -> expected[0] = (long) row.get("c"));
+		String parallel = "MATCH (p:Person) WITH collect(p) as people CALL apoc.path.expandParallel(people,'ACTED_IN>|DIRECTED>','-',1,2,false) yield path return count(*) as c";
+		TestUtil.testCall(db, parallel, (row) -> assertEquals(expected[0],row.get("c")));
+	}
+
+	@Test
+	public void testExplorePathParallelLabelFilterTest() throws Throwable {
+		// the label tokens are checked on the worker threads, each within its own transaction per shard
+		for (String labelFilter : Arrays.asList("+Person|Movie", "-BigBrother", "-Movie")) {
+			long[] expected = new long[1];
+			String expand = "MATCH (p:Person) WITH collect(p) as people CALL apoc.path.expand(people,'ACTED_IN|FOLLOWS','" + labelFilter + "',1,2) yield path return count(*) as c";
+			TestUtil.testCall(db, expand, (row) -> expected[0] = (long) row.get("c"));
+			assertEquals(true, expected[0] > 0);
+			for (boolean ordered : new boolean[] {false, true}) {
+				String parallel = "MATCH (p:Person) WITH collect(p) as people CALL apoc.path.expandParallel(people,'ACTED_IN|FOLLOWS','" + labelFilter + "',1,2," + ordered + ") yield path return count(*) as c";
+				TestUtil.testCall(db, parallel, (row) -> assertEquals(labelFilter, expected[0], row.get("c")));
+			}
+		}
+	}
+
+	@Test
+	public void testExplorePathParallelOrderedTest() throws Throwable {
+		String query = "MATCH (p:Person) WITH p ORDER BY p.name WITH collect(p) as people " +
+				"CALL apoc.path.expandParallel(people,'ACTED_IN>','-',1,1,true) yield path " +
+				"RETURN collect(startNode(path).name) as names";
+		TestUtil.testCall(db, query, (row) -> {
+			List<String> names = (List<String>) row.get("names");
+			List<String> sorted = new ArrayList<>(names);
+			Collections.sort(sorted);
+			assertEquals(sorted, names);
+		});
+	}
+
+	@Test
+	public void testSubgraphNodesTest() throws Throwable {
+		long[] expected = new long[1];
+		String expand = "MATCH (m:Movie {title: 'The Matrix'}) CALL apoc.path.expand(m,'ACTED_IN<|PRODUCED>|FOLLOWS','-BigBrother',0,3) yield path return count(distinct last(nodes(path))) as c";
+		TestUtil.testCall(db, expand, (row) -> expected[0] = (long) row.get("c"));
+		String query = "MATCH (m:Movie {title: 'The Matrix'}) CALL apoc.path.subgraphNodes(m,'ACTED_IN<|PRODUCED>|FOLLOWS','-BigBrother',3) yield node return count(*) as c, count(distinct node) as d";
+		TestUtil.testCall(db, query, (row) -> {
+			assertEquals(expected[0],row.get("c"));
+			assertEquals(expected[0],row.get("d"));
+		});
+	}
+
+	@Test
+	public void testReachableTest() throws Throwable {
+		String query = "MATCH (m:Movie {title: 'The Matrix'}) CALL apoc.path.reachable(m,'ACTED_IN<','+Person|Movie',0) yield value return collect(value) = [id(m)] as onlyStart";
+		TestUtil.testCall(db, query, (row) -> assertEquals(true,row.get("onlyStart")));
+		String unlimited = "MATCH (m:Movie {title: 'The Matrix'}) CALL apoc.path.reachable(m,'ACTED_IN','+Person|Movie',-1) yield value return count(*) as c";
+		String matched = "MATCH (m:Movie {title: 'The Matrix'})-[:ACTED_IN*0..]-(n) return count(distinct n) as c";
+		long[] expected = new long[1];
+		TestUtil.testCall(db, matched, (row) -> expected[0] = (long) row.get("c"));
+		TestUtil.testCall(db, unlimited, (row) -> assertEquals(expected[0],row.get("c")));
+	}
+
+	@Test
+	public void testExpandConfigUniquenessTest() throws Throwable {
+		long[] expected = new long[1];
+		String reachable = "MATCH (m:Movie {title: 'The Matrix'}) CALL apoc.path.reachable(m,'ACTED_IN|PRODUCED|FOLLOWS','-BigBrother',3) yield value return count(*) as c";
+		TestUtil.testCall(db, reachable, (row) -> expected[0] = (long) row.get("c"));
+		String query = "MATCH (m:Movie {title: 'The Matrix'}) CALL apoc.path.expandConfig(m,{relationshipFilter:'ACTED_IN|PRODUCED|FOLLOWS',labelFilter:'-BigBrother',maxLevel:3,uniqueness:'NODE_GLOBAL'}) yield path return count(*) as c, count(distinct last(nodes(path))) as d";
+		TestUtil.testCall(db, query, (row) -> {
+			assertEquals(expected[0],row.get("c"));
+			assertEquals(expected[0],row.get("d"));
+		});
+		String defaults = "MATCH (m:Movie {title: 'The Matrix'}) CALL apoc.path.expandConfig(m,{relationshipFilter:'ACTED_IN|PRODUCED|FOLLOWS',labelFilter:'+Person|Movie',maxLevel:3,order:'DFS'}) yield path return count(*) as c";
+		TestUtil.testCall(db, defaults, (row) -> assertEquals(107L,row.get("c")));
+	}
+
+	@Test
+	public void testExpandConfigUnlimitedMaxLevelTest() throws Throwable {
+		String expand = "MATCH (m:Movie {title: 'The Matrix'}) CALL apoc.path.expand(m,'ACTED_IN',null,0,-1) yield path return count(*) as c";
+		TestUtil.testCall(db, expand, (row) -> assertEquals(0L,row.get("c")));
+		long[] expected = new long[1];
+		String reachable = "MATCH (m:Movie {title: 'The Matrix'}) CALL apoc.path.reachable(m,'ACTED_IN',null,-1) yield value return count(*) as c";
+		TestUtil.testCall(db, reachable, (row) -> expected[0] = (long) row.get("c"));
+		String query = "MATCH (m:Movie {title: 'The Matrix'}) CALL apoc.path.expandConfig(m,{relationshipFilter:'ACTED_IN',uniqueness:'NODE_GLOBAL'}) yield path return count(*) as c";
+		TestUtil.testCall(db, query, (row) -> assertEquals(expected[0],row.get("c")));
+	}
+
+	@Test
+	public void testExpandConfigLimitAndEndNodesTest() throws Throwable {
+		String limited = "MATCH (m:Movie {title: 'The Matrix'}) CALL apoc.path.expandConfig(m,{maxLevel:3,limit:5}) yield path return count(*) as c";
+		TestUtil.testCall(db, limited, (row) -> assertEquals(5L,row.get("c")));
+		String query = "MATCH (m:Movie {title: 'The Matrix'}), (k:Person {name: 'Keanu Reeves'}), (l:Person {name: 'Laurence Fishburne'}) " +
+				"CALL apoc.path.expandConfig(m,{relationshipFilter:'ACTED_IN<',maxLevel:1,uniqueness:'NODE_GLOBAL',endNodes:[k,l]}) yield path " +
+				"return count(*) as c, collect(last(nodes(path)).name) as names";
+		TestUtil.testCall(db, query, (row) -> {
+			assertEquals(2L,row.get("c"));
+			assertEquals(new HashSet<>(Arrays.asList("Keanu Reeves","Laurence Fishburne")),new HashSet<>((List<?>) row.get("names")));
+		});
+	}
+
+	@Test
+	public void testShortestTest() throws Throwable {
+		String match = "MATCH (a:Person {name: 'Keanu Reeves'}), (b:Person {name: 'Tom Hanks'}) ";
+		long[] expected = new long[1];
+		TestUtil.testCall(db, match + "MATCH p = shortestPath((a)-[*]-(b)) return length(p) as l", (row) -> expected[0] = (long) row.get("l"));
+		String query = match + "CALL apoc.path.shortest(a,b,null,null,-1) yield path return length(path) as l, nodes(path)[0] = a as fromStart, last(nodes(path)) = b as toEnd";
+		TestUtil.testCall(db, query, (row) -> {
+			assertEquals(expected[0],row.get("l"));
+			assertEquals(true,row.get("fromStart"));
+			assertEquals(true,row.get("toEnd"));
+		});
+		String tooShort = match + "CALL apoc.path.shortest(a,b,null,null," + (expected[0] - 1) + ") yield path return count(*) as c";
+		TestUtil.testCall(db, tooShort, (row) -> assertEquals(0L,row.get("c")));
+		String directed = match + "CALL apoc.path.shortest(a,b,'ACTED_IN>',null,-1) yield path return count(*) as c";
+		TestUtil.testCall(db, directed, (row) -> assertEquals(0L,row.get("c")));
+		String missing = "OPTIONAL MATCH (a:Person {name: 'Nobody'}) WITH a MATCH (b:Person {name: 'Tom Hanks'}) CALL apoc.path.shortest(a,b,null,null,-1) yield path return count(*) as c";
+		TestUtil.testCall(db, missing, (row) -> assertEquals(0L,row.get("c")));
+	}
+
 	private static String getFragment(String name) {
 		InputStream is = ExpandPathTest.class.getClassLoader().getResourceAsStream(name);
 		return new Scanner(is).useDelimiter("\\Z").next();
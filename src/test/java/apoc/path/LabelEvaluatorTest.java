@@ -0,0 +1,83 @@
+package apoc.path;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.*;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+/**
+ * @author mh
+ * @since 17.10.26
+ */
+public class LabelEvaluatorTest {
+
+	private static GraphDatabaseAPI db;
+	private static ThreadToStatementContextBridge bridge;
+	private static long[] ids;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		db = (GraphDatabaseAPI) new TestGraphDatabaseFactory().newImpermanentDatabase();
+		bridge = db.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
+		try (Transaction tx = db.beginTx()) {
+			ids = new long[] {
+					db.createNode(Label.label("Person")).getId(),
+					db.createNode(Label.label("Movie")).getId(),
+					db.createNode(Label.label("Person"), Label.label("Actor")).getId(),
+					db.createNode().getId()
+			};
+			tx.success();
+		}
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		db.shutdown();
+	}
+
+	@Test
+	public void testIncludeLabels() throws Exception {
+		assertAccepts("+Person", true, false, true, false);
+		assertAccepts(":Person", true, false, true, false);
+		assertAccepts("+Movie|:Actor", false, true, true, false);
+	}
+
+	@Test
+	public void testExcludeLabels() throws Exception {
+		assertAccepts("-Person", false, true, false, true);
+		assertAccepts("-Movie|Actor", true, false, false, true);
+	}
+
+	@Test
+	public void testEmptyFilter() throws Exception {
+		assertAccepts("-", true, true, true, true);
+		assertAccepts("", true, true, true, true);
+		assertAccepts(null, true, true, true, true);
+	}
+
+	@Test
+	public void testLabelsThatDontExist() throws Exception {
+		assertAccepts("+Nope", false, false, false, false);
+		assertAccepts("-Nope", true, true, true, true);
+		assertAccepts("+Nope|Movie", false, true, false, false);
+	}
+
+	// expected acceptance of (:Person), (:Movie), (:Person:Actor), ()
+	private void assertAccepts(String filter, boolean... expected) {
+		try (Transaction tx = db.beginTx()) {
+			PathExplorer.LabelEvaluator byId = new PathExplorer.LabelEvaluator(filter, bridge);
+			PathExplorer.LabelEvaluator byName = new PathExplorer.LabelEvaluator(filter);
+			for (int i = 0; i < ids.length; i++) {
+				Node node = db.getNodeById(ids[i]);
+				assertEquals(filter + " node " + i, expected[i], byId.accepts(node));
+				assertEquals(filter + " node " + i, expected[i], byName.accepts(node));
+			}
+			tx.success();
+		}
+	}
+}
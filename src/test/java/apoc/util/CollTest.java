@@ -10,11 +10,13 @@ import org.neo4j.test.TestGraphDatabaseFactory;
 
 import java.util.*;
 
+import static apoc.util.TestUtil.map;
 import static apoc.util.TestUtil.testCall;
 import static apoc.util.TestUtil.testResult;
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
 
 public class CollTest {
 
@@ -55,6 +57,46 @@ public class CollTest {
         testCall(db, "CALL apoc.coll.max([1,2,3])",
                 (row) -> assertEquals(3L, row.get("value")));
     }
+    @Test public void testStats() throws Exception {
+        testCall(db, "CALL apoc.coll.stats([1,2,3,4])",
+                (row) -> {
+                    assertEquals(4L, row.get("count"));
+                    assertEquals(10D, row.get("sum"));
+                    assertEquals(1L, row.get("min"));
+                    assertEquals(4L, row.get("max"));
+                    assertEquals(2.5D, row.get("avg"));
+                    assertEquals(1.29D, (double) row.get("stdev"), 0.01D);
+                });
+        testCall(db, "CALL apoc.coll.stats([0.5,1,2.5])",
+                (row) -> {
+                    assertEquals(0.5D, row.get("min"));
+                    assertEquals(2.5D, row.get("max"));
+                });
+    }
+    @Test public void testStatsLargeLongs() throws Exception {
+        String list = "[9223372036854775807, 9223372036854775807, 1]";
+        double[] sum = new double[1];
+        testCall(db, "CALL apoc.coll.sum(" + list + ")", (row) -> sum[0] = (double) row.get("value"));
+        testCall(db, "CALL apoc.coll.stats(" + list + ")",
+                (row) -> {
+                    assertEquals(sum[0], (double) row.get("sum"), 0D);
+                    assertEquals(1.8446744073709552E19, (double) row.get("sum"), 1E4);
+                    assertEquals(9223372036854775807L, row.get("max"));
+                });
+    }
+    @Test public void testStatsMixed() throws Exception {
+        testCall(db, "CALL apoc.coll.stats([1,null,2.5,3])",
+                (row) -> {
+                    assertEquals(3L, row.get("count"));
+                    assertEquals(6.5D, row.get("sum"));
+                    assertEquals(1D, row.get("min"));
+                    assertEquals(3D, row.get("max"));
+                });
+    }
+    @Test public void testMinMaxMixed() throws Exception {
+        testCall(db, "CALL apoc.coll.min([2,0.5,3])", (row) -> assertEquals(0.5D, row.get("value")));
+        testCall(db, "CALL apoc.coll.max(['a','c','b'])", (row) -> assertEquals("c", row.get("value")));
+    }
     @Test public void testPartition() throws Exception {
         testResult(db, "CALL apoc.coll.partition([1,2,3,4,5],2)",
                 (result) -> {
@@ -67,6 +109,41 @@ public class CollTest {
                     assertFalse(result.hasNext());
                 });
     }
+    @Test public void testPartitionEvenly() throws Exception {
+        testResult(db, "CALL apoc.coll.partition([1,2,3,4],2)",
+                (result) -> {
+                    assertEquals(asList(1L,2L), result.next().get("value"));
+                    assertEquals(asList(3L,4L), result.next().get("value"));
+                    assertFalse(result.hasNext());
+                });
+        testResult(db, "CALL apoc.coll.partition([],2)", (result) -> assertFalse(result.hasNext()));
+    }
+    @Test public void testPartitionArrays() throws Exception {
+        testResult(db, "CALL apoc.coll.partitionArrays([1,2,3,4,5],2) YIELD value RETURN size(value) AS size, value[0] AS first",
+                (result) -> {
+                    Map<String, Object> row = result.next();
+                    assertEquals(2L, row.get("size"));
+                    assertEquals(1L, row.get("first"));
+                    row = result.next();
+                    assertEquals(2L, row.get("size"));
+                    assertEquals(3L, row.get("first"));
+                    row = result.next();
+                    assertEquals(1L, row.get("size"));
+                    assertEquals(5L, row.get("first"));
+                    assertFalse(result.hasNext());
+                });
+    }
+    @Test public void testPartitionQuery() throws Exception {
+        testResult(db, "CALL apoc.coll.partitionQuery('UNWIND range(1,5) AS x RETURN x',null,2)",
+                (result) -> {
+                    assertEquals(asList(1L,2L), result.next().get("value"));
+                    assertEquals(asList(3L,4L), result.next().get("value"));
+                    assertEquals(asList(5L), result.next().get("value"));
+                    assertFalse(result.hasNext());
+                });
+        testCall(db, "CALL apoc.coll.partitionQuery('UNWIND range(1,2) AS x RETURN x, x*2 AS y',{},5)",
+                (row) -> assertEquals(asList(map("x",1L,"y",2L),map("x",2L,"y",4L)), row.get("value")));
+    }
 
     @Test public void testSumLongs() throws Exception {
         testCall(db, "CALL apoc.coll.sumLongs([1,2,3])",
@@ -77,6 +154,42 @@ public class CollTest {
                 (row) -> assertEquals(asList(1L,2L,3L), row.get("value")));
     }
 
+    @Test public void testSortMixed() throws Exception {
+        testCall(db, "CALL apoc.coll.sort(['b',2,'a',1.5,null])",
+                (row) -> assertEquals(asList(null,1.5D,2L,"a","b"), row.get("value")));
+    }
+    @Test public void testSortTopK() throws Exception {
+        testCall(db, "CALL apoc.coll.sortTopK([5,3,9,1,7],3,false)",
+                (row) -> assertEquals(asList(1L,3L,5L), row.get("value")));
+        testCall(db, "CALL apoc.coll.sortTopK([5,3,9,1,7],2,true)",
+                (row) -> assertEquals(asList(9L,7L), row.get("value")));
+        testCall(db, "CALL apoc.coll.sortTopK([5,3],10,false)",
+                (row) -> assertEquals(asList(3L,5L), row.get("value")));
+    }
+    @Test public void testSortTopKStream() throws Exception {
+        testResult(db, "CALL apoc.coll.sortTopKStream([5,3,9,1,7],3,true)",
+                (result) -> {
+                    assertEquals(9L, result.next().get("value"));
+                    assertEquals(7L, result.next().get("value"));
+                    assertEquals(5L, result.next().get("value"));
+                    assertFalse(result.hasNext());
+                });
+    }
+
+    @Test public void testSetOperations() throws Exception {
+        testCall(db, "CALL apoc.coll.union([1,2,3],[3,4,2])", (row) -> assertEquals(asList(1L,2L,3L,4L), row.get("value")));
+        testCall(db, "CALL apoc.coll.intersection([1,2,3],[3,4,2])", (row) -> assertEquals(asList(2L,3L), row.get("value")));
+        testCall(db, "CALL apoc.coll.subtract([1,2,3,1],[3,4])", (row) -> assertEquals(asList(1L,2L), row.get("value")));
+        testCall(db, "CALL apoc.coll.disjunction([1,2,3],[3,4])", (row) -> assertEquals(asList(1L,2L,4L), row.get("value")));
+    }
+    @Test public void testSortedSetOperations() throws Exception {
+        testCall(db, "CALL apoc.coll.unionSorted([1,2,2,5],[2,3,6])", (row) -> assertEquals(asList(1L,2L,3L,5L,6L), row.get("value")));
+        testCall(db, "CALL apoc.coll.intersectionSorted([1,2,2,5],[2,3,5,6])", (row) -> assertEquals(asList(2L,5L), row.get("value")));
+        testCall(db, "CALL apoc.coll.subtractSorted([1,2,2,5],[2,3])", (row) -> assertEquals(asList(1L,5L), row.get("value")));
+        testCall(db, "CALL apoc.coll.disjunctionSorted([1,2,5],[2,3])", (row) -> assertEquals(asList(1L,3L,5L), row.get("value")));
+        testCall(db, "CALL apoc.coll.intersectionSorted([500,9000],range(0,10000))", (row) -> assertEquals(asList(500L,9000L), row.get("value")));
+    }
+
     @Test public void testIN() throws Exception {
         testResult(db, "CALL apoc.coll.contains([1,2,3],1)",
                 (res) -> assertEquals(true, res.hasNext()));
@@ -88,6 +201,16 @@ public class CollTest {
         testResult(db, "CALL apoc.coll.containsAll([1,2,3],[1])", (res) -> assertEquals(true, res.hasNext()));
         testResult(db, "CALL apoc.coll.containsAll([1,2,3],[1,2,3,4])", (res) -> assertEquals(false, res.hasNext()));
     }
+    @Test public void testSetHandle() throws Exception {
+        Map<String, Object> params = new HashMap<>();
+        testCall(db, "CALL apoc.coll.set.create([1,2,3])", (row) -> params.put("set", row.get("value")));
+        testResult(db, "CALL apoc.coll.set.contains({set},2)", params, (res) -> assertEquals(true, res.hasNext()));
+        testResult(db, "CALL apoc.coll.set.contains({set},4)", params, (res) -> assertEquals(false, res.hasNext()));
+        testResult(db, "CALL apoc.coll.set.containsAll({set},[1,3])", params, (res) -> assertEquals(true, res.hasNext()));
+        testResult(db, "CALL apoc.coll.set.containsAll({set},[1,4])", params, (res) -> assertEquals(false, res.hasNext()));
+        testCall(db, "CALL apoc.coll.set.remove({set})", params, (row) -> assertEquals(true, row.get("value")));
+        testCall(db, "CALL apoc.coll.set.remove({set})", params, (row) -> assertEquals(false, row.get("value")));
+    }
     @Test public void testContainsAllSorted() throws Exception {
         testResult(db, "CALL apoc.coll.containsAllSorted([1,2,3],[1,2])", (res) -> assertEquals(true, res.hasNext()));
         testResult(db, "CALL apoc.coll.containsAllSorted([1,2,3],[1,4])", (res) -> assertEquals(false, res.hasNext()));
@@ -95,6 +218,15 @@ public class CollTest {
         testResult(db, "CALL apoc.coll.containsAllSorted([1,2,3],[1])", (res) -> assertEquals(true, res.hasNext()));
         testResult(db, "CALL apoc.coll.containsAllSorted([1,2,3],[1,2,3,4])", (res) -> assertEquals(false, res.hasNext()));
     }
+    @Test public void testFindSorted() throws Exception {
+        testCall(db, "CALL apoc.coll.findSorted([1,3,5,7,9],[0,3,4,9])",
+                (row) -> {
+                    assertEquals(asList(false,true,false,true), row.get("found"));
+                    assertEquals(asList(3L,9L), row.get("matches"));
+                });
+        testCall(db, "CALL apoc.coll.findSorted(['a','c','e'],['e','a','b'])",
+                (row) -> assertEquals(asList("e","a"), row.get("matches")));
+    }
     @Test public void testIN2() throws Exception {
         int elements = 1_000_000;
         ArrayList<Long> list = new ArrayList<>(elements);
@@ -124,6 +256,27 @@ public class CollTest {
         System.out.printf("contains sorted test on %d elements took %d ms%n", elements, System.currentTimeMillis() - start);
     }
 
+    @Test public void testLargeSortAndToSet() throws Exception {
+        int elements = 200_000;
+        ArrayList<Long> list = new ArrayList<>(elements);
+        for (long i = elements; i > 0; i--) {
+            list.add(i % 1000);
+        }
+        Map<String, Object> params = new HashMap<>();
+        params.put("list", list);
+        testCall(db, "CALL apoc.coll.sort({list})", params, (row) -> {
+            List<Long> sorted = (List<Long>) row.get("value");
+            assertEquals(elements, sorted.size());
+            assertEquals(0L, (long) sorted.get(0));
+            assertEquals(999L, (long) sorted.get(elements - 1));
+        });
+        testCall(db, "CALL apoc.coll.toSet({list})", params, (row) -> {
+            List<Long> set = (List<Long>) row.get("value");
+            assertEquals(1000, set.size());
+            assertEquals(list.get(0), set.get(0));
+        });
+    }
+
     @Test public void testSortNodes() throws Exception {
         testCall(db,
             "CREATE (n {name:'foo'}),(m {name:'bar'}) WITH n,m CALL apoc.coll.sortNodes([n,m], 'name') YIELD value RETURN value",
@@ -134,4 +287,39 @@ public class CollTest {
             });
     }
 
+    @Test public void testSortNodesMultipleKeys() throws Exception {
+        testCall(db,
+            "CREATE (n {name:'foo',age:10}),(m {name:'bar',age:20}),(o {name:'foo',age:30}) WITH n,m,o CALL apoc.coll.sortNodes([n,m,o], ['name','-age']) YIELD value RETURN value",
+            (row) -> {
+                List<Node> nodes = (List<Node>) row.get("value");
+                assertEquals("bar", nodes.get(0).getProperty("name"));
+                assertEquals(30L, nodes.get(1).getProperty("age"));
+                assertEquals(10L, nodes.get(2).getProperty("age"));
+            });
+    }
+
+    @Test public void testSortNodesInvalidProp() throws Exception {
+        for (String prop : asList("null", "[]", "['name',null]", "42")) {
+            try {
+                testCall(db, "CREATE (n {name:'foo'}) WITH n CALL apoc.coll.sortNodes([n], " + prop + ") YIELD value RETURN value", (row) -> {});
+                fail("sortNodes accepted " + prop);
+            } catch (RuntimeException e) {
+                Throwable cause = e;
+                while (cause.getCause() != null) cause = cause.getCause();
+                assertEquals(prop, IllegalArgumentException.class, cause.getClass());
+            }
+        }
+    }
+
+    @Test public void testSortNodesTopK() throws Exception {
+        testCall(db,
+            "CREATE (n {name:'foo'}),(m {name:'bar'}),(o {name:'baz'}) WITH n,m,o CALL apoc.coll.sortNodesTopK([n,m,o], 'name', 2) YIELD value RETURN value",
+            (row) -> {
+                List<Node> nodes = (List<Node>) row.get("value");
+                assertEquals(2, nodes.size());
+                assertEquals("bar", nodes.get(0).getProperty("name"));
+                assertEquals("baz", nodes.get(1).getProperty("name"));
+            });
+    }
+
 }
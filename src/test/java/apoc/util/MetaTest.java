@@ -8,8 +8,12 @@ import org.junit.Test;
 import org.neo4j.graphdb.*;
 import org.neo4j.test.TestGraphDatabaseFactory;
 
+import java.io.File;
+import java.nio.file.Files;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import static apoc.util.TestUtil.map;
 import static apoc.util.TestUtil.testCall;
@@ -17,6 +21,7 @@ import static apoc.util.TestUtil.testResult;
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonMap;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 import static org.neo4j.graphdb.traversal.Evaluators.toDepth;
 
 public class MetaTest {
@@ -90,17 +95,55 @@ public class MetaTest {
                     Node n1 = nodes.get(0);
                     assertEquals(true,n1.hasLabel(Label.label("Meta")));
                     assertEquals(true,n1.hasLabel(Label.label("Actor")));
-                    assertEquals(1,n1.getProperty("count"));
+                    assertEquals(1L,n1.getProperty("count"));
                     assertEquals("Actor",n1.getProperty("name"));
                     Node n2 = nodes.get(1);
                     assertEquals(true,n2.hasLabel(Label.label("Meta")));
                     assertEquals(true,n2.hasLabel(Label.label("Movie")));
                     assertEquals("Movie",n2.getProperty("name"));
-                    assertEquals(1,n1.getProperty("count"));
+                    assertEquals(1L,n1.getProperty("count"));
                     List<Relationship> rels = (List<Relationship>) row.get("relationships");
                     Relationship rel = rels.iterator().next();
                     assertEquals("ACTED_IN",rel.getType().name());
-                    assertEquals(1,rel.getProperty("count"));
+                    assertEquals(1L,rel.getProperty("count"));
+                });
+    }
+    @Test public void testMetaGraphStats() throws Exception {
+        db.execute("CREATE (:Actor)-[:ACTED_IN]->(:Movie), (:Actor)").close();
+        testCall(db, "CALL apoc.meta.graphStats",
+                (row) -> {
+                    List<Node> nodes = (List<Node>) row.get("nodes");
+                    Node n1 = nodes.get(0);
+                    assertEquals(true,n1.hasLabel(Label.label("Meta")));
+                    assertEquals(true,n1.hasLabel(Label.label("Actor")));
+                    assertEquals("Actor",n1.getProperty("name"));
+                    assertEquals(1L,n1.getProperty("count"));
+                    Node n2 = nodes.get(1);
+                    assertEquals("Movie",n2.getProperty("name"));
+                    assertEquals(1L,n2.getProperty("count"));
+                    List<Relationship> rels = (List<Relationship>) row.get("relationships");
+                    assertEquals(1,rels.size());
+                    Relationship rel = rels.get(0);
+                    assertEquals("ACTED_IN",rel.getType().name());
+                    assertEquals(n1,rel.getStartNode());
+                    assertEquals(n2,rel.getEndNode());
+                    assertEquals(1L,rel.getProperty("count"));
+                    assertEquals(false,rel.getProperty("candidate"));
+                });
+    }
+    @Test public void testMetaGraphStatsCandidatePairs() throws Exception {
+        db.execute("CREATE (:A)-[:R]->(:B), (:C)-[:R]->(:D)").close();
+        testCall(db, "CALL apoc.meta.graphStats",
+                (row) -> {
+                    List<Relationship> rels = (List<Relationship>) row.get("relationships");
+                    Map<String, Object> pairs = new TreeMap<>();
+                    for (Relationship rel : rels) {
+                        pairs.put(rel.getStartNode().getProperty("name") + "-" + rel.getType().name() + "->" + rel.getEndNode().getProperty("name"), rel.getProperty("candidate"));
+                    }
+                    // the counts per type and one label can't tell which of the combinations exist, none is dropped
+                    Map<String, Object> expected = new TreeMap<>();
+                    for (String pair : asList("A-R->B", "A-R->D", "C-R->B", "C-R->D")) expected.put(pair, true);
+                    assertEquals(expected, pairs);
                 });
     }
     @Test public void testMetaGraph2() throws Exception {
@@ -111,17 +154,210 @@ public class MetaTest {
                     Node n1 = nodes.get(0);
                     assertEquals(true,n1.hasLabel(Label.label("Meta")));
                     assertEquals(true,n1.hasLabel(Label.label("Actor")));
-                    assertEquals(1,n1.getProperty("count"));
+                    assertEquals(1L,n1.getProperty("count"));
                     assertEquals("Actor",n1.getProperty("name"));
                     Node n2 = nodes.get(1);
                     assertEquals(true,n2.hasLabel(Label.label("Meta")));
                     assertEquals(true,n2.hasLabel(Label.label("Movie")));
                     assertEquals("Movie",n2.getProperty("name"));
-                    assertEquals(1,n1.getProperty("count"));
+                    assertEquals(1L,n1.getProperty("count"));
                     List<Relationship> rels = (List<Relationship>) row.get("relationships");
                     Relationship rel = rels.iterator().next();
                     assertEquals("ACTED_IN",rel.getType().name());
-                    assertEquals(1,rel.getProperty("count"));
+                    assertEquals(1L,rel.getProperty("count"));
                 });
     }
+    @Test public void testMetaGraphCached() throws Exception {
+        db.execute("CREATE (:Actor)-[:ACTED_IN]->(:Movie) ").close();
+        testCall(db, "CALL apoc.meta.graphCached(true)",
+                (row) -> assertEquals(1L,((List<Relationship>) row.get("relationships")).get(0).getProperty("count")));
+        db.execute("CREATE (:Actor)-[:ACTED_IN]->(:Movie) ").close();
+        testCall(db, "CALL apoc.meta.graphCached(true)",
+                (row) -> assertEquals(1L,((List<Relationship>) row.get("relationships")).get(0).getProperty("count")));
+        testCall(db, "CALL apoc.meta.graphCached(false)",
+                (row) -> assertEquals(2L,((List<Relationship>) row.get("relationships")).get(0).getProperty("count")));
+    }
+    @Test public void testMetaDataCached() throws Exception {
+        db.execute("CREATE (:Actor {name:'Tom'})").close();
+        testResult(db, "CALL apoc.meta.dataCached(true)", (r) -> assertEquals("name", r.next().get("property")));
+        db.execute("MATCH (a:Actor) SET a.born = 1956").close();
+        testResult(db, "CALL apoc.meta.dataCached(true)", (r) -> {
+            r.next();
+            assertEquals(false, r.hasNext());
+        });
+        testResult(db, "CALL apoc.meta.dataCached(false)", (r) -> {
+            r.next();
+            assertEquals("born", r.next().get("property"));
+        });
+    }
+    @Test public void testRelTypeSample() throws Exception {
+        db.execute("CREATE (:Actor)-[:ACTED_IN]->(:Movie), (:Actor)-[:ACTED_IN]->(:Movie), (:Actor)-[:ACTED_IN]->(:Play)").close();
+        testResult(db, "CALL apoc.meta.relTypeSample(100) YIELD type, startLabel, endLabel, sampled, total, estimate, margin " +
+                "RETURN * ORDER BY endLabel", (r) -> {
+            Map<String, Object> row = r.next();
+            assertEquals("ACTED_IN", row.get("type"));
+            assertEquals("Actor", row.get("startLabel"));
+            assertEquals("Movie", row.get("endLabel"));
+            assertEquals(3L, row.get("sampled"));
+            assertEquals(3L, row.get("total"));
+            assertEquals(2L, row.get("estimate"));
+            assertEquals(0L, row.get("margin"));
+            assertEquals("Play", r.next().get("endLabel"));
+            assertEquals(false, r.hasNext());
+        });
+    }
+    @Test public void testRelTypeSampleWithoutCoveringLabel() throws Exception {
+        // no label is at the start or end of all KNOWS or LIKES relationships, so both are sampled by one shared scan
+        db.execute("CREATE (:Person)-[:KNOWS]->(:Dog), (c:Cat)-[:KNOWS]->(:Person), (c)-[:LIKES]->(:Dog), ()-[:LIKES]->(c), (:Person)-[:ACTED_IN]->(:Movie)").close();
+        testResult(db, "CALL apoc.meta.relTypeSample(100) YIELD type, startLabel, endLabel, sampled, total, estimate " +
+                "RETURN * ORDER BY type, startLabel", (r) -> {
+            Map<String, Object> row = r.next();
+            assertEquals("ACTED_IN", row.get("type"));
+            assertEquals(1L, row.get("sampled"));
+            row = r.next();
+            assertEquals("KNOWS", row.get("type"));
+            assertEquals("Cat", row.get("startLabel"));
+            assertEquals("Person", row.get("endLabel"));
+            assertEquals(2L, row.get("sampled"));
+            assertEquals(2L, row.get("total"));
+            assertEquals(1L, row.get("estimate"));
+            row = r.next();
+            assertEquals("KNOWS", row.get("type"));
+            assertEquals("Person", row.get("startLabel"));
+            assertEquals("Dog", row.get("endLabel"));
+            row = r.next();
+            assertEquals("LIKES", row.get("type"));
+            assertEquals("Cat", row.get("startLabel"));
+            assertEquals(2L, row.get("sampled"));
+            assertEquals(1L, row.get("estimate"));
+            assertEquals(false, r.hasNext());
+        });
+    }
+    @Test public void testMetaDataPropertyStats() throws Exception {
+        db.execute("UNWIND range(1,10) AS id CREATE (:Person {age: id % 4, name: CASE WHEN id <= 5 THEN 'p' + id END})").close();
+        testResult(db, "CALL apoc.meta.data YIELD property, type, types, nullRatio, min, max, distinct, top RETURN * ORDER BY property", (r) -> {
+            Map<String, Object> age = r.next();
+            assertEquals("age", age.get("property"));
+            assertEquals("INTEGER", age.get("type"));
+            assertEquals(map("INTEGER", 10L), age.get("types"));
+            assertEquals(0d, age.get("nullRatio"));
+            assertEquals(0L, age.get("min"));
+            assertEquals(3L, age.get("max"));
+            assertEquals(4L, age.get("distinct"));
+            assertEquals(4, ((List) age.get("top")).size());
+            Map<String, Object> name = r.next();
+            assertEquals("name", name.get("property"));
+            assertEquals(0.5d, name.get("nullRatio"));
+            assertEquals(5L, name.get("distinct"));
+        });
+    }
+    @Test public void testMetaSchema() throws Exception {
+        db.execute("CREATE INDEX ON :Person(name)").close();
+        db.execute("CREATE CONSTRAINT ON (p:Person) ASSERT p.id IS UNIQUE").close();
+        testResult(db, "CALL apoc.meta.schema", (r) -> {
+            Map<String, Object> id = r.next();
+            assertEquals("Person", id.get("label"));
+            assertEquals("id", id.get("property"));
+            assertEquals(true, id.get("index"));
+            assertEquals(true, id.get("unique"));
+            Map<String, Object> name = r.next();
+            assertEquals("name", name.get("property"));
+            assertEquals(true, name.get("index"));
+            assertEquals(false, name.get("unique"));
+            assertEquals(false, r.hasNext());
+        });
+    }
+    @Test public void testMetaDataForLabels() throws Exception {
+        db.execute("CREATE (:Actor {name:'Tom'})-[:ACTED_IN]->(:Movie {title:'Big'})").close();
+        testResult(db, "CALL apoc.meta.dataForLabels(['Movie','Unknown'])", (r) -> {
+            Map<String, Object> row = r.next();
+            assertEquals("Movie", row.get("label"));
+            assertEquals("title", row.get("property"));
+            assertEquals(false, r.hasNext());
+        });
+    }
+    @Test public void testMetaDegrees() throws Exception {
+        db.execute("CREATE (m:Movie {title:'Big'}) WITH m UNWIND range(1,4) AS id CREATE (:Actor {id:id})-[:ACTED_IN]->(m)").close();
+        testCall(db, "CALL apoc.meta.degrees('Actor','ACTED_IN','OUTGOING')", (row) -> {
+            assertEquals(4L, row.get("count"));
+            assertEquals(4L, row.get("total"));
+            assertEquals(1L, row.get("p50"));
+            assertEquals(1L, row.get("max"));
+            assertEquals(0L, row.get("supernodes"));
+        });
+        testCall(db, "CALL apoc.meta.degrees(null,null,null)", (row) -> {
+            assertEquals(5L, row.get("count"));
+            assertEquals(4L, row.get("max"));
+            assertEquals("BOTH", row.get("direction"));
+            assertEquals("Big", ((List<Node>) row.get("top")).get(0).getProperty("title"));
+        });
+    }
+    @Test public void testMetaExportDisabledOrOutsideDirectory() throws Exception {
+        File directory = Files.createTempDirectory("meta").toFile();
+        directory.deleteOnExit();
+        System.setProperty("apoc.meta.export.directory", directory.getPath());
+        try {
+            assertExportFails("snapshot.bin");
+            System.setProperty("apoc.meta.export.enabled", "true");
+            assertExportFails("../snapshot.bin");
+            assertExportFails(new File(directory.getParentFile(), "snapshot.bin").getPath());
+            assertEquals(0, directory.list().length);
+            assertEquals(false, new File(directory.getParentFile(), "snapshot.bin").exists());
+        } finally {
+            System.clearProperty("apoc.meta.export.enabled");
+            System.clearProperty("apoc.meta.export.directory");
+        }
+    }
+    private void assertExportFails(String file) {
+        try {
+            testCall(db, "CALL apoc.meta.export({file})", map("file", file), (row) -> {});
+            fail("exported to " + file);
+        } catch (RuntimeException e) {
+            // expected
+        }
+    }
+    @Test public void testMetaExportImportDiff() throws Exception {
+        File directory = Files.createTempDirectory("meta").toFile();
+        directory.deleteOnExit();
+        System.setProperty("apoc.meta.export.enabled", "true");
+        System.setProperty("apoc.meta.export.directory", directory.getPath());
+        try {
+            exportImportDiff("before.bin", "after.bin");
+        } finally {
+            System.clearProperty("apoc.meta.export.enabled");
+            System.clearProperty("apoc.meta.export.directory");
+            for (File file : directory.listFiles()) file.delete();
+        }
+    }
+    private void exportImportDiff(String before, String after) throws Exception {
+        db.execute("CREATE (:Actor {name:'Tom'})-[:ACTED_IN]->(:Movie {title:'Big'})").close();
+        testCall(db, "CALL apoc.meta.export({file})", map("file", before), (row) -> {
+            assertEquals(2L, row.get("labels"));
+            assertEquals(1L, row.get("relationships"));
+            assertEquals(2L, row.get("properties"));
+        });
+        testCall(db, "CALL apoc.meta.import({file})", map("file", before), (row) -> {
+            List<Node> nodes = (List<Node>) row.get("nodes");
+            assertEquals("Actor", nodes.get(0).getProperty("name"));
+            assertEquals(1L, nodes.get(0).getProperty("count"));
+            assertEquals(1L, ((List<Relationship>) row.get("relationships")).get(0).getProperty("count"));
+        });
+        db.execute("CREATE (:Actor {name:'Meg'})-[:ACTED_IN]->(:Play)").close();
+        testCall(db, "CALL apoc.meta.export({file})", map("file", after), (row) -> assertEquals(3L, row.get("labels")));
+        testResult(db, "CALL apoc.meta.diff({a},{b})", map("a", before, "b", after), (r) -> {
+            Map<String, Object> row = r.next();
+            assertEquals("LABEL", row.get("kind"));
+            assertEquals(asList("Actor"), row.get("key"));
+            assertEquals("changed", row.get("change"));
+            assertEquals(1L, row.get("before"));
+            assertEquals(2L, row.get("after"));
+            row = r.next();
+            assertEquals(asList("Play"), row.get("key"));
+            assertEquals("added", row.get("change"));
+            row = r.next();
+            assertEquals(asList("Actor", "ACTED_IN", "Play"), row.get("key"));
+            assertEquals("added", row.get("change"));
+            assertEquals(false, r.hasNext());
+        });
+    }
 }